@@ -8,24 +8,129 @@
 
 import java.util.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.lang.management.ManagementFactory;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 
 public class IRoadTrip {
     /*-------------------------------------------------------------------*/
     /* global variables
     /*-------------------------------------------------------------------*/
-    static final int NumCountries = 253;    // num of countries in borders.txt
-    static final int NumStates = 216;       // num of countries in state_name.tsv
-    static final int NumDistances = 41006;  // num of recorded distances in capdist.csv
-    static final int block = 202 ;          // size of blocks in capdist.csv
-    public static String [] countries = new String [NumCountries];	// country names
-    final private static String [][] stateNums = new String [NumStates][2];	// state name, state number
-    public static String [] line0 = new String [NumCountries];	// a line from file0, borders.txt
-    public static AdjList [] adjListA  ;    // adjacency list array
-    public static int [][] distances = new int [NumDistances] [3]; //capdist.csv: country1, country2, distance
-    public static int [] numA_Arr = new int [block]; // arr of "numA" in capdist
+    static final char NoKm = Character.MAX_VALUE; // no distance recorded in capd
+    static final int DIJKSTRA = 0;          // path searches: shortest path tree from the source
+    static final int BIDI = 1;              // bidirectional Dijkstra's, stops when both sides meet
+    static final int ASTAR = 2;             // A*, heading for the capital of the destination
+    static final int CH = 3;                // contraction hierarchies, see contract()
+    static final int HUB = 4;               // hub labels, see label()
+    static final String [] SEARCHES = { "dijkstra","bidi","astar","ch","hub" }; // names of the searches
+    // the loader's work space, only used while the constructor runs (one at a time). Sized by the files
+    private static String [] countries = new String [0];	// country names
+    private static String [][] stateNums = new String [0][];	// state name, state number, state id
+    private static String [] line0 = new String [0];	// a line from file0, borders.txt
+    private static CapDist capd = null; // capdist.csv km by ord(numa) and ord(numb)
+    private static int [] stateOrd = new int [0]; // dense ordinal (row in capd) of a state number, -1 if none
+    private static int numOrd = 0; // num of ordinals handed out
+    private static int numPairs = 0; // lines with a distance in capdist.csv
+    private static Map<String,Long> loadTimes = new LinkedHashMap<>(); // load stage -> nanoseconds, of this load
+    // what queries see: replaced as a whole, never changed in place. Tools go through setRouting() and setSearch()
+    private static volatile RoutingGraph routing; // the loaded graph and names, see RoutingGraph
+    private static volatile int search = DIJKSTRA; // how Trip.path() searches, see -search
+    private static File snapFile;         // -snapshot file, null if none
+    private static List<File> snapInputs; // files the snapshot depends on
+    public static final Metrics metrics = new Metrics(); // query counts and latencies, see -metrics
+    private static LoadEvent loadEvent; // flight recorder event of the load stage running, see begin()
+    private static final String [][] ALIASES = {
+            // alias, country in borders.txt. the state_name.tsv spellings come first
+            { "Myanmar (Burma)","Burma" },
+            { "Czech Republic","Czechia" },
+            { "Macedonia (Former Yugoslav Republic of)","North Macedonia" },
+            { "Swaziland","Eswatini" },
+            { "Congo","Congo, Republic of the" },
+            { "East Timor","Timor-Leste" },
+            { "Cape Verde","Cabo Verde" },
+            { "United States of America","United States" },
+            { "Myanmar","Burma" },
+            { "Macedonia","North Macedonia" },
+            { "Bahamas","Bahamas, The" },
+            { "Gambia","Gambia, The" },
+            { "Turkey","Turkey (Turkiye)" },
+            { "Turkiye","Turkey (Turkiye)" },
+            { "Ivory Coast","Cote d'Ivoire" },
+            { "North Korea","Korea, North" },
+            { "South Korea","Korea, South" },
+            { "Vatican City","Holy See (Vatican City)" },
+            { "Falkland Islands","Falkland Islands (Islas Malvinas)" },
+            { "USA","United States" },
+            { "US","United States" },
+            { "UK","United Kingdom" } }; // every load starts a list of its own from these, see load()
 
     public static void main(String[] args) {
+        metrics.register();
         IRoadTrip a3 = new IRoadTrip(args);
+        int port = -1; // -server
+        // options after the three files
+        for ( int i = 3;  i < args.length;  i++ ) {
+            if ( args[i].equals( "-precompute" ) ) {
+                precompute();
+            } else if ( (args[i].equals( "-snapshot" ) || args[i].equals( "-aliases" )) && i+1 < args.length ) {
+                i++; // already used by the constructor
+            } else if ( args[i].equals( "-search" ) && i+1 < args.length ) {
+                // dijkstra if the name is unknown
+                search = Math.max( Arrays.asList( SEARCHES ).indexOf( args[++i] ),DIJKSTRA );
+                if ( search == CH ) {
+                    contract();
+                    System.out.println( routing.ch );
+                } else if ( search == HUB ) {
+                    label();
+                    System.out.println( routing.hubs );
+                }
+            } else if ( args[i].equals( "-times" ) ) {
+                for ( Map.Entry<String,Long> e : routing.loadTimes().entrySet() ) {
+                    System.out.printf( "%-16s %8.3f ms%n",e.getKey(),e.getValue()/1e6 );
+                }
+            } else if ( args[i].equals( "-cache" ) && i+1 < args.length ) {
+                int n = Integer.parseInt( args[++i] ); // number of trees, 0 turns the cache off
+                routing = routing.with( (n > 0 ? new TreeCache( n ) : null) );
+            } else if ( args[i].equals( "-metrics" ) && i+1 < args.length ) {
+                metrics.dumpEvery( Integer.parseInt( args[++i] ) ); // seconds
+            } else if ( args[i].equals( "-server" ) && i+1 < args.length ) {
+                port = Integer.parseInt( args[++i] );
+            } else {
+                System.out.println( "** unknown option: "+args[i]+" **" );
+            }
+        }
+        if ( port >= 0 ) { // serving HTTP instead of reading stdin
+            Server.start( port );
+            return;
+        }
         a3.acceptUserInput();
     }
 
@@ -33,88 +138,397 @@ public class IRoadTrip {
         /*-------------------------------------------------------------------*/
         /* constructor ; processing three files ; execute()
         /*-------------------------------------------------------------------*/
-        if ( args.length != 3 ) {
+        load( args );
+    }
+
+    /* LOAD(): reads the three files (or the snapshot) and publishes the result in routing. The work space
+       above is shared, so two loads never run at the same time; queries keep the old routing meanwhile */
+    private static synchronized void load (String [] args) {
+        if ( args.length < 3 ) {
             System.out.println( "** please attach: borders.txt, state_name.tsv, capdist.csv **" );
             System.exit( 0 );
         }
+        List<File> files = new ArrayList<>( List.of( new File(args[0]),new File(args[1]),new File(args[2]) ) );
+        List<String []> aliases = new ArrayList<>( Arrays.asList( ALIASES ) ); // and those of -aliases, this load only
+        File snap = null; // binary snapshot of everything below, only with -snapshot
+        snapFile = null;
+        snapInputs = files;
+        for ( int i = 3;  i+1 < args.length;  i++ ) {
+            if ( args[i].equals( "-snapshot" ) ) {
+                snap = snapFile = new File( args[i+1] );
+            } else if ( args[i].equals( "-aliases" ) ) {
+                files.add( new File( args[i+1] ) ); // aliases change the graph, so the snapshot depends on them
+                try {
+                    doAliases( new Scanner( files.get( 3 ),StandardCharsets.UTF_8 ),aliases );
+                } catch( IOException e ) {
+                    System.out.println( "** aliases: could not read "+args[i+1]+" **" );
+                }
+            }
+        }
+        loadTimes = new LinkedHashMap<>();
+        long t0 = begin();
+        RoutingGraph r = (snap == null ? null : Snapshot.load( snap,files,aliases ));
+        if ( r != null ) {
+            stage( "snapshot",t0 );
+            routing = r.with( loadTimes );
+            return; // up to date snapshot, nothing to parse
+        }
         try {
             // processing file0: borders.txt
-            File borders = new File(args[0]);
-            Scanner sc0 = new Scanner( borders );
-            doFile0( sc0,line0,countries );
+            t0 = begin();
+            Scanner sc0 = new Scanner( files.get( 0 ),StandardCharsets.UTF_8 );
+            doFile0( sc0 );
+            stage( "borders",t0 );
 
             // processing file1: state_name.tsv
-            File state_name = new File(args[1]);
-            Scanner sc1 = new Scanner( state_name );
+            t0 = begin();
+            Scanner sc1 = new Scanner( files.get( 1 ),StandardCharsets.UTF_8 ); // not the platform charset, it has a curly quote
             doFile1( sc1);
+            stage( "state names",t0 );
 
             // processing file2: capdist.csv
-            File capdist = new File(args[2]);
-            Scanner sc2 = new Scanner( capdist );
-            doFile2( sc2,numA_Arr, distances);
+            doFile2( files.get( 2 ) );
 
-        } catch(Exception e ) {
+        } catch( IOException e ) {
             System.out.println( "** I/O exception **" );
             System.exit( 0 );
+        } catch( RuntimeException e ) { // read, but not in the expected form
+            System.out.println( "** could not load the files: "+e+" **" );
+            System.exit( 1 );
+        } catch( OutOfMemoryError e ) {
+            System.out.println( "** out of memory loading the files, a larger -Xmx may help **" );
+            throw e;
+        }
+        routing = execute( aliases ).with( loadTimes ) ;
+        // the RoutingGraph has what it needs, the work space would only keep a second copy alive
+        countries = line0 = new String [0] ;
+        stateNums = new String [0][] ;
+        capd = null ;
+        if ( snap != null ) {
+            Snapshot.save( routing,snap,files );
         }
-        execute() ;
     }
 
-    /* EXECUTE(): method called by IRoadTrip constructor. The array of adjacency lists is constructed here. */
-    public void execute(){
+    /* EXECUTE(): method called by IRoadTrip constructor. The border graph is constructed here, and
+       returned with the names and the aliases of this load in a new RoutingGraph. */
+    private static RoutingGraph execute( List<String []> aliases ){
 
+        long t0 = begin();
         sort0();    // stateNums[][] is sorted
-        sort1();	// distance[][] is sorted
+        stage( "sort states",t0 );
+        t0 = begin();
+        // country names, aliases and state ids are hashed, on copies of the work space
+        RoutingGraph r = new RoutingGraph( countries,stateNums,capd,stateOrd,aliases );
+        stage( "names",t0 );
+        t0 = begin();
 
-        adjListA = new AdjList [NumCountries];
-        for ( int i = 0;  i < NumCountries;  i++ ) {
-            int [] nabor = nextTo( line0[i] ); // indexes of neighboring countries in borders.txt
-            adjListA[i] = new AdjList();
+        int n = countries.length;
+        long [][] edges = new long [n][]; // per country: neighbor<<32|distance, increasing by neighbor
+        int m = 0;
+        for ( int i = 0;  i < n;  i++ ) {
+            int [] nabor = nextTo( r,line0[i] ); // indexes of neighboring countries in borders.txt
+            long [] e = new long [nabor.length];
+            int k = 0;
 
             if ( nabor[0] != -2 ) { // if there is a neighbor
 
                 // for every neighboring country in borders.txt, ensure the country exists in state_name.
-                // if so, add the new gNode (graph node) to the adjacency list
+                // if so, the neighbor and its distance become an edge
                 for (int x : nabor) {
-                    int y = findDistance(countries[i], countries[x], numA_Arr, distances);
+                    int y = r.capitalDistance(countries[i], countries[x]);
                     if (y != -1) { // distance exists
-                        adjListA[i].add(new gNode(x, y));
+                        e[k++] = ((long) x << 32) | y;
                     }
                 }
             }
+            edges[i] = Arrays.copyOf( e,k );
+            Arrays.sort( edges[i] ); // neighbors in increasing order by vertex
+            m += k;
+        }
+
+        // packing the edges into one offsets/targets/weights triple
+        int [] offsets = new int [n+1];
+        int [] targets = new int [m];
+        int [] weights = new int [m];
+        for ( int i = 0;  i < n;  i++ ) {
+            int k = offsets[i];
+            for ( long e : edges[i] ) {
+                targets[k] = (int) (e >>> 32);
+                weights[k++] = (int) e;
+            }
+            offsets[i+1] = k;
         }
+        r = r.with( new Graph( offsets,targets,weights ),null );
+        stage( "graph",t0 );
+        return( r );
     }
 
     /* GETDISTANCE(): returns the distance between two countries with land borders, if exists. */
     public static int getDistance (String country1, String country2) {
-        Trip t = new Trip( countries, distances, adjListA, numA_Arr) ;
-       int num1 = index(country1) ;
-       int num2 = index(country2) ;
-       if (num1 < 0 || num2 < 0){
-           return (-1) ;
-       }
-       gNode p = adjListA[num1].head ;
-       while(p != null){
-           if(p.vrtx == num2){
-               return(t.Distance(country1,country2)) ;
-           }
-           p = p.link ;
-       }
-       return(-1) ;
+       long t0 = metrics.getDistance.start() ;
+       RoutingGraph r = routing ;
+       int num1 = r.index(country1) ;
+       int num2 = r.index(country2) ;
+       // the weight of the edge is the capdist.csv distance, -1 if there is no edge
+       int d = (num1 < 0 || num2 < 0 ? -1 : r.graph.weight( num1,num2 )) ;
+       metrics.getDistance.stop( t0 ) ;
+       return( d ) ;
     }
 
     /* FINDPATH(): finds the shortest path between two countries and returns in List form */
     public static List<String> findPath (String country1, String country2) {
-        Trip t = new Trip( countries, distances, adjListA, numA_Arr) ;
-
-        List<String> roadPath = t.path( country1,country2 );
+        List<String> roadPath = findRoute( country1,country2 ).legs() ;
         return (roadPath) ;
     }
 
+    /* FINDROUTE(): the shortest path between two countries as a Route, unreachable if there is none */
+    public static Route findRoute (String country1, String country2) {
+        RoutingGraph r = routing ;
+        return( findRoute( r,r.index( country1 ),r.index( country2 ) ) ) ;
+    }
+
+    /* FINDROUTE(): the same, between vertices of r (-1 for a name that does not exist), all on that RoutingGraph */
+    static Route findRoute (RoutingGraph r, int v0, int v1) {
+        long t0 = metrics.findPath.start() ;
+        RouteEvent ev = new RouteEvent() ; // costs nothing unless a recording has it turned on
+        ev.begin() ;
+        Table tb = r.table ;
+        Route route ;
+        int settled = 0 ;
+        if ( v0 < 0 || v1 < 0 ) {
+            route = new Route( r.countries ) ;
+        } else if ( tb != null ) { // precomputed, just walk the table
+            route = tb.route( v0,v1 ) ;
+        } else {
+            Trip t = new Trip( r ) ;
+            route = t.route( v0,v1 ) ;
+            settled = t.settled ;
+        }
+        metrics.findPath.stop( t0 ) ;
+        if ( ev.shouldCommit() ) {
+            ev.origin = (v0 < 0 ? null : r.countries[v0]) ;
+            ev.destination = (v1 < 0 ? null : r.countries[v1]) ;
+            ev.search = (tb != null ? "table" : SEARCHES[search]) ;
+            ev.settled = settled ;
+            ev.legs = route.km.length ;
+            ev.unreachable = route.unreachable ;
+            ev.commit() ;
+        }
+        return( route ) ;
+    }
+
+
+    /* GETPATHDISTANCE(): total km of the shortest path between two countries, -1 if there is none */
+    public static int getPathDistance (String country1, String country2) {
+        RoutingGraph r = routing ;
+        return( getPathDistance( r,r.index( country1 ),r.index( country2 ) ) ) ;
+    }
+
+    /* GETPATHDISTANCE(): the same, between vertices of r (-1 for a name that does not exist) */
+    static int getPathDistance (RoutingGraph r, int v0, int v1) {
+        if ( v0 < 0 || v1 < 0 || !r.reachable( v0,v1 ) ) {
+            return( -1 ) ;
+        }
+        Table tb = r.table ;
+        if ( tb != null ) {
+            return( tb.distance( v0,v1 ) ) ;
+        }
+        Hubs l = r.hubs ;
+        if ( search == HUB && l != null ) { // a merge of two labels
+            return( l.distance( v0,v1 ) ) ;
+        }
+        Trip t = new Trip( r ) ;
+        int d = t.tree( v0 ).dist[v1] ;
+        return( (d == Integer.MAX_VALUE ? -1 : d) ) ;
+    }
+
+    /* FINDPATHS(): findPath() for many pairs of countries at once, returned in the same order. Every name
+       is looked up once, repeated pairs are answered once (and share their List, so every answer is one that
+       can not be changed), and each distinct first country runs one shortest path tree. The first countries
+       are spread over the fork-join pool */
+    public static List<List<String>> findPaths (List<String[]> pairs) {
+        RoutingGraph r = routing ;
+        Map<String,Integer> ids = new HashMap<>() ;
+        Map<Integer,Integer> slot = new HashMap<>() ;           // first country to its spot in origins
+        List<Integer> origins = new ArrayList<>() ;
+        List<Map<Integer,Integer>> dests = new ArrayList<>() ;  // second country to its spot in the answers
+        int [] at = new int [pairs.size()] ;  // spot in origins of every pair, -1 for a name that does not exist
+        int [] pos = new int [pairs.size()] ; // spot in the answers of that origin
+        for ( int i = 0;  i < at.length;  i++ ) {
+            int v0 = ids.computeIfAbsent( pairs.get( i )[0],r::index ) ;
+            int v1 = ids.computeIfAbsent( pairs.get( i )[1],r::index ) ;
+            if ( v0 < 0 || v1 < 0 ) {
+                at[i] = -1 ;
+                continue ;
+            }
+            int k = slot.computeIfAbsent( v0,v -> {
+                origins.add( v ) ;
+                dests.add( new LinkedHashMap<>() ) ;
+                return( origins.size()-1 ) ;
+            } ) ;
+            Map<Integer,Integer> d = dests.get( k ) ;
+            at[i] = k ;
+            pos[i] = d.computeIfAbsent( v1,v -> d.size() ) ; // repeated pair, same spot
+        }
+
+        Table tb = r.table ;
+        List<List<List<String>>> found = new ArrayList<>( Collections.nCopies( origins.size(),null ) ) ;
+        // each origin only writes its own spot of found
+        IntStream.range( 0,origins.size() ).parallel().forEach( k -> {
+            int v0 = origins.get( k ) ;
+            Trip t = new Trip( r ) ; // a Trip keeps state of its last run, so one per origin
+            Set<Integer> to = dests.get( k ).keySet() ;
+            List<List<String>> y = new ArrayList<>( to.size() ) ;
+            sTree tree = null ; // only run when some second country can be reached
+            for ( int v1 : to ) {
+                if ( tb != null ) {
+                    y.add( List.copyOf( tb.route( v0,v1 ).legs() ) ) ;
+                } else if ( !r.reachable( v0,v1 ) ) { // no path
+                    y.add( List.copyOf( new Route( r.countries ).legs() ) ) ;
+                } else {
+                    tree = (tree == null ? t.tree( v0 ) : tree) ;
+                    y.add( List.copyOf( t.treeRoute( tree,v0,v1 ).legs() ) ) ;
+                }
+            }
+            found.set( k,y ) ;
+        } ) ;
+
+        List<List<String>> y = new ArrayList<>( at.length ) ;
+        List<String> none = List.of( "" ) ; // every name that does not exist
+        for ( int i = 0;  i < at.length;  i++ ) {
+            if ( at[i] < 0 ) {
+                y.add( none ) ;
+            } else {
+                y.add( found.get( at[i] ).get( pos[i] ) ) ;
+            }
+        }
+        return( y ) ;
+    }
+
+    /* REACHABLE(): true if there is a path between two countries, by comparing their components */
+    public static boolean reachable (String country1, String country2) {
+        RoutingGraph r = routing ;
+        int v0 = r.index( country1 ) ;
+        int v1 = r.index( country2 ) ;
+        return( v0 >= 0 && v1 >= 0 && r.reachable( v0,v1 ) ) ;
+    }
+
+    /* COMPONENTS(): the groups of countries that can reach each other by land (continents, islands),
+       largest first. Every group is in the order of borders.txt */
+    public static List<List<String>> components () {
+        RoutingGraph r = routing ;
+        Map<Integer,List<String>> y = new LinkedHashMap<>() ;
+        for ( int v = 0;  v < r.countries.length;  v++ ) {
+            y.computeIfAbsent( r.component[v],k -> new ArrayList<>() ).add( r.countries[v] ) ;
+        }
+        List<List<String>> c = new ArrayList<>( y.values() ) ;
+        c.sort( (a,b) -> b.size()-a.size() ) ; // stable, so groups of the same size stay in order
+        return( c ) ;
+    }
+
+    /* GETROUTING(): the RoutingGraph queries run on now */
+    static RoutingGraph getRouting() {
+        return( routing ) ;
+    }
+
+    /* SETROUTING(): replaces what queries run on, for tools that compare a search with and without what was
+       built on top of the graph. null lets the loaded data go */
+    static void setRouting( RoutingGraph r ) {
+        routing = r ;
+    }
+
+    /* GETSEARCH(): the search route() uses, DIJKSTRA to HUB */
+    static int getSearch() {
+        return( search ) ;
+    }
+
+    /* SETSEARCH(): changes the search of -search, for the queries that start after it */
+    static void setSearch( int k ) {
+        search = k ;
+    }
+
+    /* PRECOMPUTE(): runs Dijkstra's from every country once, so findPath() and getPathDistance() become table walks.
+       Refused, with a message, if the Table can not index that many countries or would not fit in the heap */
+    public static synchronized void precompute() {
+        RoutingGraph r = routing ;
+        int n = r.countries.length ;
+        long bytes = 6L*n*n ; // an int and a char per pair
+        if ( !Table.fits( n ) || bytes > Runtime.getRuntime().maxMemory() ) {
+            System.out.println( "** precompute: a Table of "+n+" countries needs "+(bytes >> 20)+" MB, and at most "+
+                    Table.MAX+" countries fit in one; the searches are used instead **" ) ;
+            return ;
+        }
+        routing = r.with( new Table( r ) ) ;
+    }
+
+    /* CONTRACT(): preprocesses the graph into contraction hierarchies, for -search ch */
+    public static synchronized void contract() {
+        RoutingGraph r = routing ;
+        routing = r.with( new Ch( r.graph ) ) ;
+    }
+
+    /* LABEL(): builds the hub labels for -search hub, unless the snapshot had them. They are added to the snapshot,
+       unless a border was changed since the load */
+    public static synchronized void label() {
+        RoutingGraph r = routing ;
+        if ( r.hubs == null ) {
+            routing = r.with( new Hubs( r.graph ) ) ; // the Table, contraction and cache stay
+            if ( snapFile != null && r.graph == r.base ) {
+                Snapshot.save( routing,snapFile,snapInputs ) ;
+            }
+        }
+    }
+
+    /* CLOSEBORDER(): closes the border between two countries, in both directions. null if there is no such border */
+    public static Update closeBorder (String country1, String country2) {
+        return( update( country1,country2,-1,false ) ) ;
+    }
+
+    /* REOPENBORDER(): opens a border again, with the distance it was loaded with. null if there is no such border */
+    public static Update reopenBorder (String country1, String country2) {
+        return( update( country1,country2,-1,true ) ) ;
+    }
+
+    /* SETBORDER(): changes the distance of a border, in both directions. null if there is no such border, or if km is
+       not between 0 and 65534, the most capdist.csv can give, so sums of legs stay in an int like the loaded ones */
+    public static Update setBorder (String country1, String country2, int km) {
+        return( (km < 0 || km >= NoKm ? null : update( country1,country2,km,false )) ) ;
+    }
+
+    /* UPDATE(): changes one border on a copy of the graph, repairs the cached trees and the Table on copies,
+       then publishes it all at once. Queries keep using the old RoutingGraph until then */
+    private static synchronized Update update (String country1, String country2, int km, boolean reopen) {
+        long t0 = metrics.updates.start() ; // every update is timed
+        RoutingGraph r = routing ;
+        int a = r.index( country1 ) ;
+        int b = r.index( country2 ) ;
+        if ( a < 0 || b < 0 || a == b || (r.base.weight( a,b ) < 0 && r.base.weight( b,a ) < 0) ) {
+            return( null ) ; // only borders of borders.txt can change
+        }
+        Update up = new Update( r.countries[a],r.countries[b],a,b ) ;
+        Graph g = r.graph ;
+        for ( int k = 0;  k < 2;  k++ ) {
+            int u = up.u[k] ;
+            int v = up.v[k] ;
+            int w0 = r.base.weight( u,v ) ; // -1 if this direction has no capdist.csv distance
+            int w = (w0 < 0 ? -1 : reopen ? w0 : km) ;
+            up.before[k] = g.weight( u,v ) ;
+            up.after[k] = w ;
+            g = g.with( u,v,w ) ;
+        }
+        if ( g != r.graph ) {
+            TreeCache c = r.cache ;
+            Table tb = r.table ;
+            routing = r.with( g,(tb == null ? null : tb.repair( g,up )),(c == null ? null : c.repair( g,up )) ) ;
+        }
+        up.nanos = System.nanoTime()-t0 ;
+        metrics.updates.stop( t0 ) ;
+        metrics.update( up ) ;
+        return( up ) ;
+    }
 
     /* ACCEPTUSERINPUT(): allows user to find the shortest path between countries */
     public void acceptUserInput() {
-        Trip trip = new Trip( countries,distances,adjListA,numA_Arr);
         Scanner kbd = new Scanner( System.in );
 
         while ( true ) {
@@ -130,15 +544,22 @@ public class IRoadTrip {
             if ( y.equals( "EXIT" ) ) {
                 break;
             }
-            int ix = index( x );
-            int iy = index( y );
+            RoutingGraph r = routing; // the same one for the whole query
+            int ix = r.index( x );
+            int iy = r.index( y );
             if ( (ix < 0) || (iy < 0) || (ix == iy) ) { // country was the same or does not exist
                 System.out.println( "Invalid country name. "+
                         "Please enter a valid country name." );
+                for ( String s : new String [] { x,y } ) { // names starting with what was typed
+                    List<String> c = (r.index( s ) < 0 && !s.isBlank() ? r.complete( s ) : List.of());
+                    if ( !c.isEmpty() ) {
+                        System.out.println( "Did you mean: "+String.join( "; ",c )+" ?" );
+                    }
+                }
                 continue;
             }
-            List<String> roadPath = trip.path( x,y );
-            System.out.println( "Route from "+x+" to "+y+":" );
+            List<String> roadPath = findPath( x,y );
+            System.out.println( "Route from "+r.countries[ix]+" to "+r.countries[iy]+":" );
             for (String s : roadPath) {
                 if (!roadPath.contains("")){
                     System.out.print(" * ") ;
@@ -149,43 +570,14 @@ public class IRoadTrip {
         kbd.close();
     }
 
-    /* FINDDISTANCE(): find the distance between two countries in the distance array using binary search. */
-    private static int findDistance(String country1, String country2,int [] numaA,int [][] dist ) {
-        int b,m,t;
-
-        // get state number
-        int num1 = num( country1 );
-        int num2 = num( country2 );
-        if ( num1 == num2 ) { // same country
-            return( 0 );
-        }
-
-        // first: find the block where country1 is
-        b = 0;
-        t = 202;
-        while ( b < t ) {
-            m = ((b+t)/2);
-            if ( num1 <= numaA[m] ) {
-                t = m;
-            } else {
-                b = m+1;
-            }
-        }
-
-        // determines when blocks start and end. block 64 is flawed, it is double the size of others
-        b = (t <= 64 ? 202*t : 202*t+202);
-        t = (t != 64 ? b+201 : b+403);
+    /* GETCAPITALDISTANCE(): distance in km between the capitals of two countries, -1 if capdist.csv has none */
+    public static int getCapitalDistance( String country1,String country2 ) {
+        return( routing.capitalDistance( country1,country2 ) );
+    }
 
-        // second: find the line in the block where country2 is
-        while ( b < t ) {
-            m = ((b+t)/2);
-            if ( num2 <= dist[m][1] ) {
-                t = m;
-            } else {
-                b = m+1;
-            }
-        }
-        return( (dist[t][1] == num2 ? dist[t][2] : -1) );
+    /* LEG(): formats one leg of a path, as printed by findPath() */
+    private static String leg( String c0,String c1,int d ) {
+        return( c0 + " --> "+c1+" ("+d+" km.)" );
     }
 
     /* GETNAME1(): finding the country name in file1 (state_name.tsv). */
@@ -198,25 +590,36 @@ public class IRoadTrip {
         return( s );
     }
 
-    /* INDEX(): finds index of a country in borders.txt. */
+    /* INDEX(): finds index of a country in borders.txt, by its name, an alias or a state id (any case). */
     private static int index( String name ) {
-        int b,m,t;
-
-        b = 0;
-        t = countries.length-1;
-        while ( b  < t ) {
-            m = ((b+t) >> 1 );
-            if ( name.compareTo( countries[m] ) <= 0 ) {
-                t = m;
-            } else {
-                b = m+1;
+        return( routing.index( name ) );
+    }
+
+    /* KEY(): the form every name is hashed under */
+    private static String key( String name ) {
+        return( name.trim().toLowerCase( Locale.ROOT ) );
+    }
+
+    /* COMPLETE(): up to 10 countries with a name or alias starting with prefix (any case) */
+    public static List<String> complete( String prefix ) {
+        return( routing.complete( prefix ) );
+    }
+
+    /* DOALIASES(): reads extra aliases into the list of this load, one "alias<tab>country" per line */
+    private static void doAliases( Scanner sc,List<String []> aliases ) {
+
+        while ( sc.hasNextLine() ) {
+            String s = sc.nextLine();
+            int j = s.indexOf( '\t' );
+            if ( j > 0 ) {
+                aliases.add( new String [] { s.substring( 0,j ).trim(),s.substring( j+1 ).trim() } );
             }
         }
-        return( (name.equals( countries[t] ) ? t : -1) );
+        sc.close();
     }
 
-    /* NEXTTO(): returns array of countries adjacent to s, using borders.txt. */
-    private static int [] nextTo( String s ) {
+    /* NEXTTO(): returns array of countries adjacent to s, using borders.txt and the names of r. */
+    private static int [] nextTo( RoutingGraph r,String s ) {
 
         // replacing all '=' with ';'
         s = s.replace( '=',';' );
@@ -225,7 +628,7 @@ public class IRoadTrip {
             y[0] = -2;			// no neighbor
             return( y );
         }
-        int [] x = new int [countries.length];	// very temporary
+        int [] x = new int [(int) s.chars().filter( c -> c == ';' ).count()];	// one per ';', very temporary
         int n = 0;
         while ( s.indexOf( ';' ) != -1 ) {
             s = s.substring( s.indexOf( ';' )+2 );
@@ -234,448 +637,2783 @@ public class IRoadTrip {
                 i++; // where ; is
             } while ( !Character.isDigit( s.charAt( i ) ) );
             String t = s.substring( 0,i-1 );
-            x[n++] = index( t ); // n = number of neighbors
+            x[n++] = r.index( t ); // n = number of neighbors
             s = s.substring( i );
         }
-        int [] y = new int [n];
-        System.arraycopy(x, 0, y, 0, n);
-        return( y );
+        int [] y = new int [n];
+        System.arraycopy(x, 0, y, 0, n);
+        return( y );
+    }
+
+    /* SORT0(): sorts the state names in stateNums[][] in alphabetical order (a stable merge sort). */
+    private static void sort0() {
+        // rows with the same name keep their order from state_name.tsv
+        Arrays.sort( stateNums,Comparator.comparing( (String [] r) -> r[0] ) );
+    }
+
+    public static class Graph { // compressed sparse row graph, never changes once built
+
+        /*-----------------------------------------------------------*/
+        /* data members: Graph
+        /*-----------------------------------------------------------*/
+
+        final int n;            // number of vertices
+        final int [] offsets;   // edges of v are offsets[v] .. offsets[v+1]-1
+        final int [] targets;   // index in borders.txt of the neighbor, increasing for each v
+        final int [] weights;   // distance in capdist.csv
+
+        /*-----------------------------------------------------------*/
+        /* constructor: Graph
+        /*-----------------------------------------------------------*/
+
+        Graph( int [] o,int [] t,int [] w ) {
+            n = o.length-1;
+            offsets = o;
+            targets = t;
+            weights = w;
+        }
+
+        /*-----------------------------------------------------------*/
+        /* methods: Graph
+        /*-----------------------------------------------------------*/
+
+        /* DEGREE(): number of neighbors of v */
+        public int degree( int v ) {
+            return( offsets[v+1]-offsets[v] );
+        }
+
+        /* WEIGHT(): distance of the edge from u to v using binary search, -1 if they are not neighbors */
+        public int weight( int u,int v ) {
+            int b = offsets[u];
+            int t = offsets[u+1]-1;
+            while ( b <= t ) {
+                int m = ((b+t) >>> 1);
+                if ( targets[m] < v ) {
+                    b = m+1;
+                } else if ( targets[m] > v ) {
+                    t = m-1;
+                } else {
+                    return( weights[m] );
+                }
+            }
+            return( -1 );
+        }
+
+        /* WITH(): a copy with the edge from u to v set to w, added if it is not there, removed if w is -1.
+           Only the arrays that change are copied */
+        Graph with( int u,int v,int w ) {
+
+            int k = offsets[u];
+            while ( k < offsets[u+1] && targets[k] < v ) { // where v is, or goes
+                k++;
+            }
+            boolean has = (k < offsets[u+1] && targets[k] == v);
+            if ( (w < 0 && !has) || (has && weights[k] == w) ) { // nothing changes
+                return( this );
+            }
+            if ( has && w >= 0 ) { // the same edges, one other weight
+                int [] we = weights.clone();
+                we[k] = w;
+                return( new Graph( offsets,targets,we ) );
+            }
+            int d = (w < 0 ? -1 : 1);
+            int [] o = offsets.clone();
+            for ( int i = u+1;  i <= n;  i++ ) {
+                o[i] += d;
+            }
+            int [] ta = new int [targets.length+d];
+            int [] we = new int [targets.length+d];
+            System.arraycopy( targets,0,ta,0,k );
+            System.arraycopy( weights,0,we,0,k );
+            if ( w < 0 ) { // removed: the rest moves down one
+                System.arraycopy( targets,k+1,ta,k,targets.length-k-1 );
+                System.arraycopy( weights,k+1,we,k,targets.length-k-1 );
+            } else { // added: the rest moves up one
+                ta[k] = v;
+                we[k] = w;
+                System.arraycopy( targets,k,ta,k+1,targets.length-k );
+                System.arraycopy( weights,k,we,k+1,targets.length-k );
+            }
+            return( new Graph( o,ta,we ) );
+        }
+    }
+
+    public static final class RoutingGraph { // the names, distances and border graph queries run on
+
+        /*-----------------------------------------------------------*/
+        /* data members: RoutingGraph
+        /*
+        /* nothing in here changes once it is built. A change (like
+        /* precompute()) makes a new RoutingGraph that shares the rest,
+        /* and replaces IRoadTrip.routing with it, so a query that read
+        /* routing once sees one consistent graph without any locks.
+        /*-----------------------------------------------------------*/
+
+        final String [] countries;    // country names, by index in borders.txt
+        final String [][] stateNums;  // state name, state number, state id, sorted by name
+        final CapDist capd;           // capdist.csv km: capd.get( stateOrd[numa],stateOrd[numb] )
+        final int [] stateOrd;        // row in capd of a state number, -1 if none
+        final int [] countryOrd;      // row in capd of a country in borders.txt, -1 if none
+        private final Map<String,Integer> countryKey; // name, alias or state id -> index in borders.txt
+        private final Map<String,Integer> stateKey;   // name, alias or state id -> state number
+        private final Trie trie;      // names and aliases in lower case, for autocomplete
+        final Graph graph;            // border graph, null until execute() adds it
+        final Table table;            // all-pairs shortest paths, only with precompute()
+        final Ch ch;                  // contraction hierarchies, only with contract()
+        final Hubs hubs;              // hub labels, only with label() (or a snapshot that has them)
+        final TreeCache cache;        // recently used shortest path trees, null if off
+        final int [] component;       // component[v]: which connected part of the graph v is in, null without a graph
+        final Graph base;             // the graph as it was loaded, before any border was changed
+        final boolean lowered;        // a border is shorter than it was loaded, so capitalKm() can overestimate
+        private final Map<String,Long> loadTimes; // load stage -> nanoseconds, of the load that made it
+
+        /*-----------------------------------------------------------*/
+        /* constructor: RoutingGraph
+        /*-----------------------------------------------------------*/
+
+        /* copies the arrays of the loader, so a later load can not change them, and hashes the names. capd is
+           not copied: it is by far the largest, and doFile2() makes a new one for every load */
+        RoutingGraph( String [] c,String [][] s,CapDist k,int [] o,List<String []> a0 ) {
+
+            countries = c.clone();
+            stateNums = new String [s.length][];
+            for ( int i = 0;  i < s.length;  i++ ) {
+                stateNums[i] = s[i].clone();
+            }
+            capd = k;
+            stateOrd = o.clone();
+
+            Map<String,Integer> ck = new HashMap<>();
+            Map<String,Integer> sk = new HashMap<>();
+            Trie tr = new Trie();
+
+            // first: countries in borders.txt and states in state_name.tsv, under their own names
+            for ( int i = 0;  i < countries.length;  i++ ) {
+                ck.put( countries[i],i );
+                ck.putIfAbsent( key( countries[i] ),i );
+                tr.add( countries[i],i );
+            }
+            for ( String [] r : stateNums ) { // the first row of a name wins, like the binary search did
+                int n = Integer.parseInt( r[1] );
+                sk.putIfAbsent( key( r[0] ),n );
+                sk.putIfAbsent( key( r[2] ),n );
+            }
+
+            // second: aliases. a country without a state of its own takes the state of an alias
+            for ( String [] a : a0 ) {
+                Integer i = ck.get( a[1] );
+                if ( i == null ) {
+                    continue;   // not a country in borders.txt
+                }
+                ck.putIfAbsent( key( a[0] ),i );
+                tr.add( a[0],i );
+                Integer n = sk.get( key( a[0] ) );
+                if ( n != null ) {
+                    sk.putIfAbsent( key( a[1] ),n );
+                }
+            }
+            Map<Integer,Integer> country = new HashMap<>(); // state number -> index in borders.txt
+            for ( int i = 0;  i < countries.length;  i++ ) {
+                Integer n = sk.get( key( countries[i] ) );
+                if ( n != null ) {
+                    country.putIfAbsent( n,i );
+                }
+            }
+
+            // third: state names and ids lead to their country as well
+            for ( String [] r : stateNums ) {
+                Integer i = country.get( Integer.parseInt( r[1] ) );
+                if ( i != null ) {
+                    ck.putIfAbsent( key( r[0] ),i );
+                    ck.putIfAbsent( key( r[2] ),i );
+                    tr.add( r[0],i );
+                }
+            }
+            countryKey = Collections.unmodifiableMap( ck );
+            stateKey = Collections.unmodifiableMap( sk );
+            trie = tr;
+
+            // last: the row in capd of every country, for capitalKm()
+            int [] co = new int [countries.length];
+            for ( int i = 0;  i < co.length;  i++ ) {
+                Integer n = sk.get( key( countries[i] ) );
+                co[i] = (n != null && n < stateOrd.length ? stateOrd[n] : -1);
+            }
+            countryOrd = co;
+            graph = null;
+            table = null;
+            ch = null;
+            hubs = null;
+            cache = new TreeCache( 64 );
+            component = null;
+            base = null;
+            lowered = false;
+            loadTimes = Map.of();
+        }
+
+        private RoutingGraph( RoutingGraph r,Graph g,Table t,Ch h,Hubs l,TreeCache tc ) {
+            this( r,g,t,h,l,tc,r.loadTimes );
+        }
+
+        private RoutingGraph( RoutingGraph r,Graph g,Table t,Ch h,Hubs l,TreeCache tc,Map<String,Long> lt ) {
+
+            countries = r.countries;
+            stateNums = r.stateNums;
+            capd = r.capd;
+            stateOrd = r.stateOrd;
+            countryOrd = r.countryOrd;
+            countryKey = r.countryKey;
+            stateKey = r.stateKey;
+            trie = r.trie;
+            graph = g;
+            table = t;
+            ch = h;
+            hubs = l;
+            cache = tc;
+            component = (g == r.graph ? r.component : components( g ));
+            base = (r.base == null ? g : r.base); // the first graph is the loaded one
+            lowered = (g == r.graph ? r.lowered : g != base && lowered( g,base ));
+            loadTimes = lt;
+        }
+
+        /* LOWERED(): true if some edge of g weighs less than it does in b, the graph as it was loaded */
+        private static boolean lowered( Graph g,Graph b ) {
+
+            for ( int u = 0;  u < g.n;  u++ ) {
+                for ( int e = g.offsets[u];  e < g.offsets[u+1];  e++ ) {
+                    if ( g.weights[e] < b.weight( u,g.targets[e] ) ) { // an edge of g is always one of b
+                        return( true );
+                    }
+                }
+            }
+            return( false );
+        }
+
+        /* COMPONENTS(): labels the connected components of g with a breadth first search from every vertex
+           not labeled yet, so they are numbered in the order of their first country */
+        private static int [] components( Graph g ) {
+
+            int [] c = new int [g.n];
+            Arrays.fill( c,-1 );
+            int [] queue = new int [g.n];
+            int k = 0; // components so far
+            for ( int s = 0;  s < g.n;  s++ ) {
+                if ( c[s] >= 0 ) {
+                    continue;
+                }
+                int head = 0;
+                int tail = 0;
+                queue[tail++] = s;
+                c[s] = k;
+                while ( head < tail ) {
+                    int u = queue[head++];
+                    for ( int e = g.offsets[u];  e < g.offsets[u+1];  e++ ) {
+                        if ( c[g.targets[e]] < 0 ) {
+                            c[g.targets[e]] = k;
+                            queue[tail++] = g.targets[e];
+                        }
+                    }
+                }
+                k++;
+            }
+            return( c );
+        }
+
+        /* REACHABLE(): true if there is a path between vertices v0 and v1 */
+        public boolean reachable( int v0,int v1 ) {
+            return( component[v0] == component[v1] );
+        }
+
+        /*-----------------------------------------------------------*/
+        /* methods: RoutingGraph
+        /*-----------------------------------------------------------*/
+
+        /* WITH(): a copy with another graph (and its hub labels), with a table, with contraction
+           hierarchies or with another cache. Everything built on the old graph is dropped with it */
+        RoutingGraph with( Graph g,Hubs l ) {
+            return( new RoutingGraph( this,g,null,null,l,(cache == null ? null : new TreeCache( cache.size )) ) );
+        }
+
+        /* the Table and trees repaired for a changed border. The contraction and the labels do not fit g any more */
+        RoutingGraph with( Graph g,Table t,TreeCache tc ) {
+            return( new RoutingGraph( this,g,t,null,null,tc ) );
+        }
+
+        RoutingGraph with( Table t ) {
+            return( new RoutingGraph( this,graph,t,ch,hubs,cache ) );
+        }
+
+        RoutingGraph with( Ch h ) {
+            return( new RoutingGraph( this,graph,table,h,hubs,cache ) );
+        }
+
+        RoutingGraph with( Hubs l ) {
+            return( new RoutingGraph( this,graph,table,ch,l,cache ) );
+        }
+
+        RoutingGraph with( TreeCache tc ) {
+            return( new RoutingGraph( this,graph,table,ch,hubs,tc ) );
+        }
+
+        /* the times of the load, copied so the loader can not change them */
+        RoutingGraph with( Map<String,Long> lt ) {
+            return( new RoutingGraph( this,graph,table,ch,hubs,cache,
+                    Collections.unmodifiableMap( new LinkedHashMap<>( lt ) ) ) );
+        }
+
+        /* LOADTIMES(): how long each stage of the load that made it took, in nanoseconds */
+        public Map<String,Long> loadTimes() {
+            return( loadTimes );
+        }
+
+        /* COUNTRIES(): the country names, by index in borders.txt */
+        public List<String> countries() {
+            return( Collections.unmodifiableList( Arrays.asList( countries ) ) );
+        }
+
+        /* INDEX(): finds index of a country in borders.txt, by its name, an alias or a state id (any case). */
+        public int index( String name ) {
+
+            long t0 = metrics.lookup.start();
+            Integer i = countryKey.get( name ); // exact name, no lower case copy needed
+            if ( i == null ) {
+                i = countryKey.get( key( name ) );
+            }
+            metrics.lookup.stop( t0 );
+            return( (i == null ? -1 : i) );
+        }
+
+        /* NUM(): finds the state number of a country (name, alias or state id), -1 if it is not a state */
+        private int num( String s ) {
+
+            Integer n = stateKey.get( key( s ) );
+            return( (n == null ? -1 : n) );
+        }
+
+        /* COMPLETE(): up to 10 countries with a name or alias starting with prefix (any case) */
+        public List<String> complete( String prefix ) {
+            return( trie.complete( key( prefix ),10,countries ) );
+        }
+
+        /* CAPITALDISTANCE(): distance in km between the capitals of two countries, -1 if capdist.csv has none */
+        public int capitalDistance( String country1,String country2 ) {
+
+            // get state number
+            int num1 = num( country1 );
+            int num2 = num( country2 );
+            if ( num1 < 0 || num2 < 0 ) { // not a state in state_name.tsv
+                return( -1 );
+            }
+            if ( num1 == num2 ) { // same country
+                return( 0 );
+            }
+            int a = (num1 < stateOrd.length ? stateOrd[num1] : -1);
+            int b = (num2 < stateOrd.length ? stateOrd[num2] : -1);
+            if ( a < 0 || b < 0 ) {
+                return( -1 );
+            }
+            char km = capd.get( a,b );
+            return( (km == NoKm ? -1 : km) );
+        }
+
+        /* CAPITALKM(): capital to capital distance between two countries by index in borders.txt, 0 if not known */
+        int capitalKm( int v0,int v1 ) {
+
+            int a = countryOrd[v0];
+            int b = countryOrd[v1];
+            if ( a < 0 || b < 0 || a == b ) {
+                return( 0 );
+            }
+            char km = capd.get( a,b );
+            return( (km == NoKm ? 0 : km) );
+        }
+    }
+
+    static final class CapDist { // capdist.csv km by state ordinals: a full matrix, or rows of pairs when few are known
+
+        /*-----------------------------------------------------------*/
+        /* data members: CapDist
+        /*-----------------------------------------------------------*/
+
+        final int ords;       // rows (and columns), the states in capdist.csv
+        final char [] full;   // full[a*ords+b], NoKm where the file has no distance. null for rows of pairs
+        final int [] start;   // rows of pairs: row a is start[a] .. start[a+1]-1. null for a full matrix
+        final int [] col;     // ordinal of numb of every pair, increasing within a row
+        final char [] km;     // km of every pair
+
+        /*-----------------------------------------------------------*/
+        /* constructor: CapDist
+        /*-----------------------------------------------------------*/
+
+        CapDist( int w,char [] f ) {
+            ords = w;
+            full = f;
+            start = null;
+            col = null;
+            km = null;
+        }
+
+        CapDist( int w,int [] s,int [] c,char [] k ) {
+            ords = w;
+            full = null;
+            start = s;
+            col = c;
+            km = k;
+        }
+
+        /*-----------------------------------------------------------*/
+        /* methods: CapDist
+        /*-----------------------------------------------------------*/
+
+        /* FULL(): true if a full matrix for w states is the smaller way to keep the pairs. A cell takes 2
+           bytes and a pair in a row 6, so a file with a third of all pairs or more is a matrix, like the real
+           one. A file with only the borders (a few pairs per state) is kept as rows, which grows with the
+           number of pairs instead of its square. A matrix must also fit in one array */
+        static boolean full( int w,long pairs ) {
+
+            long cells = (long) w*w;
+            return( cells <= Integer.MAX_VALUE-8 && cells <= 3*pairs );
+        }
+
+        /* ROWS(): the pairs of every block of capdist.csv, (numb << 16 | km) in pairs[k] for row[k], put
+           together into sorted rows */
+        static CapDist rows( int w,int [] row,long [][] pairs ) {
+
+            int [] s = new int [w+1];
+            for ( int k = 0;  k < row.length;  k++ ) {
+                s[row[k]+1] += pairs[k].length;
+            }
+            for ( int a = 0;  a < w;  a++ ) {
+                s[a+1] += s[a];
+            }
+            long [] e = new long [s[w]];
+            int [] at = Arrays.copyOf( s,w ); // next free spot of every row, a state can have several blocks
+            for ( int k = 0;  k < row.length;  k++ ) {
+                System.arraycopy( pairs[k],0,e,at[row[k]],pairs[k].length );
+                at[row[k]] += pairs[k].length;
+            }
+            IntStream.range( 0,w ).parallel().forEach( a -> Arrays.sort( e,s[a],s[a+1] ) );
+            int [] c = new int [e.length];
+            char [] k = new char [e.length];
+            for ( int i = 0;  i < e.length;  i++ ) {
+                c[i] = (int) (e[i] >>> 16);
+                k[i] = (char) e[i];
+            }
+            return( new CapDist( w,s,c,k ) );
+        }
+
+        /* GET(): km between the capitals of ordinals a and b, NoKm if the file has none */
+        char get( int a,int b ) {
+
+            if ( full != null ) {
+                return( full[(int) ((long) a*ords+b)] );
+            }
+            int lo = start[a];
+            int hi = start[a+1]-1;
+            while ( lo <= hi ) { // binary search over the row
+                int m = (lo+hi) >>> 1;
+                if ( col[m] < b ) {
+                    lo = m+1;
+                } else if ( col[m] > b ) {
+                    hi = m-1;
+                } else {
+                    return( km[m] );
+                }
+            }
+            return( NoKm );
+        }
+    }
+
+    private static class Heap { // indexed binary min-heap of vertices, for Dijkstra's
+
+        /*-----------------------------------------------------------*/
+        /* data members: Heap
+        /*-----------------------------------------------------------*/
+
+        private int [] heap; // vertices, heap[0] has the minimum distance
+        private int [] pos;  // pos[v] is the spot of vertex v in heap[], -1 if not queued
+        private int [] key;  // key[v] is the distance of vertex v
+        private int size;
+        private int inserts, decreases; // counted here, added to the metrics once per search
+
+        /*-----------------------------------------------------------*/
+        /* constructor: Heap
+        /*-----------------------------------------------------------*/
+
+        Heap( int n ) {
+            heap = new int [n];
+            pos = new int [n];
+            key = new int [n];
+            size = 0;
+            Arrays.fill( pos,-1 );
+        }
+
+        /*-----------------------------------------------------------*/
+        /* methods: Heap
+        /*-----------------------------------------------------------*/
+
+        /* DECREASE(): lowers the distance of v, adding v to the heap if it is not queued yet */
+        private void decrease( int v,int newDist ) {
+
+            key[v] = newDist;
+            if ( pos[v] < 0 ) { // not queued, add at the bottom
+                pos[v] = size;
+                heap[size++] = v;
+                inserts++;
+            } else {
+                decreases++;
+            }
+            up( pos[v] );
+        }
+
+        /* CHANGE(): sets the key of v, up or down, adding v to the heap if it is not queued yet */
+        private void change( int v,int k ) {
+
+            if ( pos[v] < 0 ) {
+                decrease( v,k );
+                return;
+            }
+            key[v] = k;
+            up( pos[v] );
+            down( pos[v] );
+        }
+
+        /* DELETEMIN(): removes the vertex with the minimum distance from the heap */
+        private int deleteMin() {
+
+            int u = heap[0]; // storing vertex of the root
+            pos[u] = -1;
+            if ( --size > 0 ) { // last vertex moves to the root
+                heap[0] = heap[size];
+                pos[heap[0]] = 0;
+                down( 0 );
+            }
+            return( u );
+        }
+
+        /* CLEAR(): empties the heap for the next search. Only the vertices still queued need their pos reset */
+        private void clear() {
+
+            for ( int i = 0;  i < size;  i++ ) {
+                pos[heap[i]] = -1;
+            }
+            size = 0;
+            inserts = 0;
+            decreases = 0;
+        }
+
+        /* MIN(): distance of the vertex at the root */
+        private int min() {
+            return( key[heap[0]] );
+        }
+
+        /* ISNOTDONE(): ensures the heap still holds vertices */
+        private boolean isNotDone() {
+            return( size > 0 );
+        }
+
+        /* UP(): moves the vertex at spot i up until its parent is not larger */
+        private void up( int i ) {
+
+            int v = heap[i];
+            while ( i > 0 ) {
+                int p = (i-1) >> 1; // parent
+                if ( key[heap[p]] <= key[v] ) {
+                    break;
+                }
+                heap[i] = heap[p];
+                pos[heap[i]] = i;
+                i = p;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+
+        /* DOWN(): moves the vertex at spot i down until no child is smaller */
+        private void down( int i ) {
+
+            int v = heap[i];
+            while ( true ) {
+                int c = 2*i+1; // left child
+                if ( c >= size ) {
+                    break;
+                }
+                if ( c+1 < size && key[heap[c+1]] < key[heap[c]] ) {
+                    c++; // right child is smaller
+                }
+                if ( key[v] <= key[heap[c]] ) {
+                    break;
+                }
+                heap[i] = heap[c];
+                pos[heap[i]] = i;
+                i = c;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+    }
+
+    static final class Workspace { // arrays of one search, reused from query to query instead of allocated
+
+        /*-----------------------------------------------------------*/
+        /* data members: Workspace
+        /*-----------------------------------------------------------*/
+
+        private static final AtomicReferenceArray<Workspace> pool = new AtomicReferenceArray<>( 64 ); // idle ones
+
+        final int n;            // vertices it was made for
+        final Heap [] queue;    // one heap per side, side 0 searches forwards and side 1 backwards
+        final int [][] dist;    // dist[k][v], only meaningful when seen[k][v] == epoch
+        final int [][] prev;
+        private final int [][] seen; // epoch of the search that last wrote dist[k][v], so nothing is cleared
+        private int epoch;
+
+        /*-----------------------------------------------------------*/
+        /* constructor: Workspace
+        /*-----------------------------------------------------------*/
+
+        private Workspace( int n ) {
+
+            this.n = n;
+            queue = new Heap [] { new Heap( n ),new Heap( n ) };
+            dist = new int [2][n];
+            prev = new int [2][n];
+            seen = new int [2][n];
+            epoch = 0;
+        }
+
+        /*-----------------------------------------------------------*/
+        /* methods: Workspace
+        /*-----------------------------------------------------------*/
+
+        /* TAKE(): an idle workspace for n vertices from the pool, or a new one if there is none. A thread
+           holds it for one search and gives it back, so no two searches ever share one. Workspaces of another
+           size stay where they are, and the idle ones sit in the first slots, so the scan is short */
+        static Workspace take( int n ) {
+
+            for ( int i = 0;  i < pool.length();  i++ ) {
+                Workspace w = pool.get( i );
+                if ( w != null && w.n == n && pool.compareAndSet( i,w,null ) ) {
+                    w.begin();
+                    return( w );
+                }
+            }
+            Workspace w = new Workspace( n );
+            w.begin();
+            return( w );
+        }
+
+        /* GIVE(): returns a workspace to the first free slot of the pool. With none free, one of another size
+           (from a graph before a reload) gives its slot up to it, and otherwise it is dropped */
+        static void give( Workspace w ) {
+
+            for ( int k = 0;  k < 2;  k++ ) { // first a free slot, then one of another size
+                for ( int i = 0;  i < pool.length();  i++ ) {
+                    Workspace o = pool.get( i );
+                    if ( (k == 0 ? o == null : o != null && o.n != w.n) && pool.compareAndSet( i,o,w ) ) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /* BEGIN(): starts a new search. Bumping the epoch forgets every distance, the heaps forget their vertices */
+        private void begin() {
+
+            if ( ++epoch == Integer.MAX_VALUE ) { // wrapped, every stamp has to go once
+                for ( int [] s : seen ) {
+                    Arrays.fill( s,0 );
+                }
+                epoch = 1;
+            }
+            queue[0].clear();
+            queue[1].clear();
+        }
+
+        /* DIST(): distance of v on side k in this search, Integer.MAX_VALUE if not reached yet */
+        int dist( int k,int v ) {
+            return( (seen[k][v] == epoch ? dist[k][v] : Integer.MAX_VALUE) );
+        }
+
+        /* SET(): v is d from the source of side k, coming from p */
+        void set( int k,int v,int d,int p ) {
+
+            seen[k][v] = epoch;
+            dist[k][v] = d;
+            prev[k][v] = p;
+        }
+    }
+
+    public static class Trip {
+
+        /*-----------------------------------------------------------*/
+        /* data members: Trip
+        /*-----------------------------------------------------------*/
+
+        public final RoutingGraph routing; // what this trip searches, fixed when it is made
+        public final String [] country;
+        public final Graph graph;
+        public int settled;  // vertices settled by the last search
+
+        /*-----------------------------------------------------------*/
+        /* constructor: Trip
+        /*-----------------------------------------------------------*/
+
+        Trip( RoutingGraph r ) {
+
+            routing = r;
+            country = r.countries;
+            graph = r.graph;
+        }
+
+
+        /*-----------------------------------------------------------*/
+        /* methods - Trip
+        /*-----------------------------------------------------------*/
+
+        /* FINDMINPATHS(): implements Dijkstra's algorithm to find the shortest path between two vertices */
+        public int [][] findMinPaths( int s ) {
+
+            int [] dist = new int [graph.n];
+            int [] prev = new int [graph.n];
+            findTree( s,dist,prev );
+            int [][] minPath = new int [graph.n][2]; // distance and previous vertex, nothing else is used
+            for ( int v = 0;  v < graph.n;  v++ ) {
+                minPath[v][0] = dist[v];
+                minPath[v][1] = prev[v];
+            }
+            // array with minimum path is returned
+            return( minPath );
+        }
+
+        /* FINDTREE(): Dijkstra's algorithm from s, fills in dist[] and prev[] (the shortest path tree). Only the heap
+           comes from the Workspace: the caller keeps the tree (in the TreeCache or a Table row), so it brings the arrays */
+        public void findTree( int s,int [] dist,int [] prev ) {
+
+            // dist[v] is the distance from s, starting vertex, to a vertex v
+            Workspace w = Workspace.take( graph.n );
+            Heap queue = w.queue[0];
+            for ( int v = 0;  v < graph.n;  v++ ) {
+                // initializing
+                dist[v] = Integer.MAX_VALUE;	// infinity
+                prev[v] = -1;
+            }
+            dist[s] = 0; // every vertex is 0 km from itself, root of the heap
+            queue.decrease( s,0 );
+            settled = 0;
+            int relaxed = 0;
+            while ( queue.isNotDone() ) {
+                int u = queue.deleteMin();
+                settled++;
+                // search through every vertex v which is adjacent to u
+                for ( int e = graph.offsets[u];  e < graph.offsets[u+1];  e++ ) {
+                    int v = graph.targets[e];
+                    int newDist = dist[u]+graph.weights[e];
+                    relaxed++;
+                    if ( newDist < dist[v] ) {
+                        dist[v] = newDist;
+                        prev[v] = u;
+                        queue.decrease( v,newDist );
+                    }
+                }
+            }
+            metrics.tree( settled,relaxed,queue.inserts,queue.decreases );
+            Workspace.give( w );
+        }
+
+        /* PATH(): calls findMinPaths to find the minimum path between two countries */
+        public List<String> path( String country1,String country2 ) {
+
+            int v0 = routing.index( country1 );
+            int v1 = routing.index( country2 );
+            if (v0 < 0 || v1 < 0 ){
+                settled = 0;
+                return( new Route( country ).legs() );
+            }
+            return( route( v0,v1 ).legs() );
+        }
+
+        /* ROUTE(): finds the shortest path from v0 to v1 the way -search says, as a Route */
+        public Route route( int v0,int v1 ) {
+
+            if ( !routing.reachable( v0,v1 ) ) { // no path to search for
+                settled = 0;
+                return( new Route( country ) );
+            }
+            Ch h = routing.ch;
+            Hubs l = routing.hubs;
+            int k = search; // read once, it can change while this runs
+            if ( k == ASTAR && routing.lowered ) { // the heuristic is not a lower bound any more
+                k = BIDI;
+            }
+            if ( k == DIJKSTRA || (k == CH && h == null) || (k == HUB && l == null) ) {
+                return( treeRoute( tree( v0 ),v0,v1 ) );
+            }
+            int [] path = (k == BIDI ? biSearch( v0,v1 ) :
+                           k == ASTAR ? aStar( v0,v1 ) :
+                           k == CH ? h.query( v0,v1 ) : l.path( v0,v1 ));
+            if ( path == null ) { // no path
+                return( new Route( country ) );
+            }
+            path = direct( path );
+            int [] km = new int [path.length-1];
+            for ( int j = 0;  j < km.length;  j++ ) { // every leg is a border, the weight of its edge
+                km[j] = graph.weight( path[j],path[j+1] );
+            }
+            return( new Route( country,path,km ) );
+        }
+
+        /* TREEROUTE(): the route from v0 to v1 out of the tree of v0. The legs are differences of distances */
+        Route treeRoute( sTree tree,int v0,int v1 ) {
+
+            if ( tree.dist[v1] == Integer.MAX_VALUE ) { // no path
+                return( new Route( country ) );
+            }
+            int [] path = unwind( tree.prev,v0,v1 );
+            int [] km = new int [path.length-1];
+            for ( int j = 0;  j < km.length;  j++ ) {
+                km[j] = tree.dist[path[j+1]]-tree.dist[path[j]];
+            }
+            return( new Route( country,path,km ) );
+        }
+
+        /* SIMPLE(): the path as an array, without loops. A border of 0 km (like the two Congos) lets a path
+           go past a country and come back at no cost, so whatever lies between two visits of a vertex is cut */
+        static int [] simple( List<Integer> p ) {
+
+            int [] y = new int [p.size()];
+            Map<Integer,Integer> at = new HashMap<>(); // vertex -> its spot in y
+            int m = 0;
+            for ( int v : p ) {
+                Integer i = at.get( v );
+                if ( i == null ) {
+                    at.put( v,m );
+                    y[m++] = v;
+                    continue;
+                }
+                for ( int j = i+1;  j < m;  j++ ) { // the loop goes
+                    at.remove( y[j] );
+                }
+                m = i+1;
+            }
+            return( (m == y.length ? y : Arrays.copyOf( y,m )) );
+        }
+
+        /* DIRECT(): the path with every detour left out that a border is just as short as, like going
+           through the other Congo at 0 km. Paths of the same length then have as few legs as they can */
+        int [] direct( int [] path ) {
+
+            int [] y = new int [path.length];
+            int m = 0;
+            int i = 0;
+            while ( i < path.length-1 ) {
+                y[m++] = path[i];
+                int next = i+1;
+                long km = graph.weight( path[i],path[i+1] );
+                for ( int k = i+2;  k < path.length;  k++ ) { // the farthest vertex a border goes to as short
+                    km += graph.weight( path[k-1],path[k] );
+                    if ( graph.weight( path[i],path[k] ) == km ) {
+                        next = k;
+                    }
+                }
+                i = next;
+            }
+            y[m++] = path[path.length-1];
+            return( (m == y.length ? path : Arrays.copyOf( y,m )) );
+        }
+
+        /* UNWIND(): follows a previous array back from v1 to v0, returns the vertices from v0 to v1 */
+        int [] unwind( int [] prev,int v0,int v1 ) {
+
+            int l = 0;
+            for ( int i = v1;  i != v0;  i = prev[i] ) {
+                l++;
+            }
+            int [] y = new int [l+1];
+            for ( int i = v1;  0 <= l;  i = prev[i] ) { // unwinding the previous array to retrieve actual path
+                y[l--] = i;
+            }
+            return( y );
+        }
+
+        /* ASTAR(): A* search from v0 to v1. The heuristic is the capital to capital distance to v1 from
+           capdist.csv, which a road path can not beat as long as no border was made shorter than it was loaded
+           (route() runs biSearch() then). Returns the vertices on the shortest path, null if none */
+        public int [] aStar( int v0,int v1 ) {
+
+            Workspace w = Workspace.take( graph.n );
+            Heap queue = w.queue[0]; // keyed on distance from v0 plus the heuristic
+            w.set( 0,v0,0,-1 );
+            queue.decrease( v0,routing.capitalKm( v0,v1 ) );
+            settled = 0;
+            int [] y = null;
+            while ( queue.isNotDone() ) {
+                int u = queue.deleteMin();
+                settled++;
+                if ( u == v1 ) { // reached, nothing left in the heap can be shorter
+                    y = unwind( w.prev[0],v0,v1 );
+                    break;
+                }
+                int du = w.dist[0][u];
+                for ( int e = graph.offsets[u];  e < graph.offsets[u+1];  e++ ) {
+                    int v = graph.targets[e];
+                    int newDist = du+graph.weights[e];
+                    if ( newDist < w.dist( 0,v ) ) { // a settled vertex goes back in the heap if it improves
+                        w.set( 0,v,newDist,u );
+                        queue.decrease( v,newDist+routing.capitalKm( v,v1 ) );
+                    }
+                }
+            }
+            Workspace.give( w );
+            return( y );
+        }
+
+        /* BISEARCH(): bidirectional Dijkstra's, from v0 forwards and from v1 backwards until the two
+           frontiers meet. Returns the vertices on the shortest path, null if there is none */
+        public int [] biSearch( int v0,int v1 ) {
+
+            // side 0 searches from v0, side 1 from v1. the borders are undirected, so
+            // the backward search runs over the same graph
+            Workspace w = Workspace.take( graph.n );
+            Heap [] queue = w.queue;
+            int [][] prev = w.prev; // only read along paths, every vertex on one was set in this search
+            w.set( 0,v0,0,-1 );
+            w.set( 1,v1,0,-1 );
+            queue[0].decrease( v0,0 );
+            queue[1].decrease( v1,0 );
+            int best = (v0 == v1 ? 0 : Integer.MAX_VALUE); // shortest v0 -> v1 distance seen so far
+            int meet = v0;                                  // vertex where that path crosses over
+            settled = 0;
+
+            while ( queue[0].isNotDone() && queue[1].isNotDone() ) {
+                if ( (long) queue[0].min()+queue[1].min() >= best ) {
+                    break; // neither frontier can lead to a shorter path
+                }
+                int s = (queue[0].min() <= queue[1].min() ? 0 : 1); // grow the nearer frontier
+                int u = queue[s].deleteMin();
+                settled++;
+                int du = w.dist[s][u];
+                for ( int e = graph.offsets[u];  e < graph.offsets[u+1];  e++ ) {
+                    int v = graph.targets[e];
+                    int newDist = du+graph.weights[e];
+                    int dv = w.dist( s,v );
+                    if ( newDist < dv ) {
+                        w.set( s,v,newDist,u );
+                        queue[s].decrease( v,newDist );
+                        dv = newDist;
+                    }
+                    int other = w.dist( 1-s,v );
+                    if ( other != Integer.MAX_VALUE && dv+other < best ) {
+                        best = dv+other;
+                        meet = v;
+                    }
+                }
+            }
+            if ( best == Integer.MAX_VALUE ) {
+                Workspace.give( w );
+                return( null );
+            }
+
+            // v0 .. meet from the forward side, then meet .. v1 from the backward side
+            int l = 0;
+            for ( int i = meet;  i != -1;  i = prev[0][i] ) {
+                l++;
+            }
+            for ( int i = prev[1][meet];  i != -1;  i = prev[1][i] ) {
+                l++;
+            }
+            int [] y = new int [l];
+            int j = 0;
+            for ( int i = meet;  i != -1;  i = prev[0][i] ) {
+                y[j++] = i;
+            }
+            for ( int a = 0, b = j-1;  a < b;  a++, b-- ) { // forward half was unwound backwards
+                int t = y[a];
+                y[a] = y[b];
+                y[b] = t;
+            }
+            for ( int i = prev[1][meet];  i != -1;  i = prev[1][i] ) {
+                y[j++] = i;
+            }
+            Workspace.give( w );
+            return( y );
+        }
+
+        /* REPAIR(): fixes a shortest path tree (dist[], prev[]) of the old graph for the border change up, now in g.
+           First the subtrees below longer or closed edges are cut off and grown again from the rest of the
+           tree, then shorter or opened edges are relaxed and only what they improve is settled. Returns the
+           number of vertices touched, the rest of the tree is not looked at */
+        static int repair( Graph g,int [] dist,int [] prev,Update up ) {
+
+            Workspace w = Workspace.take( g.n );
+            Heap queue = w.queue[0];
+            int [] stack = w.prev[1]; // scratch, side 1 is not used here
+            int [] cut = w.dist[1];   // the vertices cut off, marked by w.set( 0,v,.. )
+            int top = 0;
+            int n = 0;
+            for ( int k = 0;  k < up.u.length;  k++ ) {
+                int v = up.v[k];
+                if ( up.longer( k ) && prev[v] == up.u[k] && w.dist( 0,v ) == Integer.MAX_VALUE ) {
+                    w.set( 0,v,0,0 );
+                    stack[top++] = v;
+                }
+            }
+            while ( top > 0 ) { // the subtrees, through the edges of the tree (prev[y] == x is only set along one)
+                int x = stack[--top];
+                cut[n++] = x;
+                for ( int e = g.offsets[x];  e < g.offsets[x+1];  e++ ) {
+                    int y = g.targets[e];
+                    if ( prev[y] == x && w.dist( 0,y ) == Integer.MAX_VALUE ) {
+                        w.set( 0,y,0,0 );
+                        stack[top++] = y;
+                    }
+                }
+            }
+            for ( int i = 0;  i < n;  i++ ) {
+                dist[cut[i]] = Integer.MAX_VALUE;
+                prev[cut[i]] = -1;
+            }
+            for ( int i = 0;  i < n;  i++ ) { // best way in from the part that was kept. Borders are mutual in
+                int x = cut[i];                // borders.txt, so the neighbors of x are the ones that can reach it
+                for ( int e = g.offsets[x];  e < g.offsets[x+1];  e++ ) {
+                    int y = g.targets[e];
+                    int wy = g.weight( y,x );
+                    if ( w.dist( 0,y ) == Integer.MAX_VALUE && dist[y] != Integer.MAX_VALUE && wy >= 0 &&
+                            dist[y]+wy < dist[x] ) {
+                        dist[x] = dist[y]+wy;
+                        prev[x] = y;
+                    }
+                }
+                if ( dist[x] != Integer.MAX_VALUE ) {
+                    queue.decrease( x,dist[x] );
+                }
+            }
+            int touched = n+settle( g,dist,prev,queue,w );
+
+            for ( int k = 0;  k < up.u.length;  k++ ) { // then the shorter edges
+                int u = up.u[k];
+                int v = up.v[k];
+                if ( up.shorter( k ) && dist[u] != Integer.MAX_VALUE && dist[u]+up.after[k] < dist[v] ) {
+                    dist[v] = dist[u]+up.after[k];
+                    prev[v] = u;
+                    queue.decrease( v,dist[v] );
+                }
+            }
+            touched += settle( g,dist,prev,queue,w );
+            Workspace.give( w );
+            return( touched );
+        }
+
+        /* SETTLE(): Dijkstra's from what is in the heap, on top of dist[]. Returns the vertices settled that
+           were not cut off, the cut ones are counted already */
+        private static int settle( Graph g,int [] dist,int [] prev,Heap queue,Workspace w ) {
+
+            int y = 0;
+            while ( queue.isNotDone() ) {
+                int x = queue.deleteMin();
+                if ( w.dist( 0,x ) == Integer.MAX_VALUE ) {
+                    y++;
+                }
+                for ( int e = g.offsets[x];  e < g.offsets[x+1];  e++ ) {
+                    int v = g.targets[e];
+                    int d = dist[x]+g.weights[e];
+                    if ( d < dist[v] ) {
+                        dist[v] = d;
+                        prev[v] = x;
+                        queue.decrease( v,d );
+                    }
+                }
+            }
+            return( y );
+        }
+
+        /* TREE(): shortest path tree from s, taken from the cache when it is there */
+        public sTree tree( int s ) {
+
+            TreeCache c = routing.cache;
+            sTree t = (c == null ? null : c.get( s ));
+            if ( t == null ) {
+                t = new sTree( graph.n );
+                findTree( s,t.dist,t.prev );
+                if ( c != null ) {
+                    c.put( s,t );
+                }
+            }
+            return( t );
+        }
+    }
+
+    public static class Ch { // contraction hierarchies: shortcut edges and a vertex order for fast point queries
+
+        /*-----------------------------------------------------------*/
+        /* data members: Ch
+        /*-----------------------------------------------------------*/
+
+        final int n;
+        final int [] rank;  // order in which each vertex was contracted
+        final Graph up;     // edges (shortcuts included) from each vertex to higher ranked vertices
+        final int [] via;   // via[e]: the vertex shortcut e of up skips, -1 for a border
+        public final int shortcuts;
+        public final long buildNanos;
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder queryNanos = new LongAdder();
+
+        // used while contracting only. the adjacency of v is the first deg[v] entries of nb/km/mid[v],
+        // and holds only the vertices not contracted yet
+        private int [][] nb;      // neighbors
+        private int [][] km;      // km to each of them
+        private int [][] mid;     // vertex a shortcut skips, -1 for a border
+        private int [] deg;
+        private int [] wdist;     // witness search distances, MAX_VALUE when untouched
+        private int [] hops;      // borders from the start of the witness search
+        private int [] touched;   // vertices with a wdist, wdist[touched[0..count-1]]
+        private int count;
+        private Heap wqueue;      // one heap for every witness search
+
+        static final int WITNESS_LIMIT = 500;   // most vertices a witness search settles when contracting
+        static final int SIMULATE_LIMIT = 50;   // and when only counting the shortcuts, for a priority
+        static final int WITNESS_HOPS = 16;     // most borders on a witness path when contracting
+        static final int SIMULATE_HOPS = 3;     // and when only counting
+
+        /*-----------------------------------------------------------*/
+        /* constructor: Ch
+        /*-----------------------------------------------------------*/
+
+        Ch( Graph g ) {
+
+            long t0 = System.nanoTime();
+            n = g.n;
+            nb = new int [n][];
+            km = new int [n][];
+            mid = new int [n][];
+            deg = new int [n];
+            for ( int v = 0;  v < n;  v++ ) {
+                int d = Math.max( g.offsets[v+1]-g.offsets[v],2 );
+                nb[v] = new int [d];
+                km[v] = new int [d];
+                mid[v] = new int [d];
+                for ( int e = g.offsets[v];  e < g.offsets[v+1];  e++ ) {
+                    link( v,g.targets[e],g.weights[e],-1 );
+                }
+            }
+            wdist = new int [n];
+            Arrays.fill( wdist,Integer.MAX_VALUE );
+            hops = new int [n];
+            touched = new int [n];
+            wqueue = new Heap( n );
+            rank = new int [n];
+            int [] gone = new int [n]; // contracted neighbors, spreads the contraction over the graph
+            int [][] upEdges = new int [n][];
+
+            // a vertex keeps its priority until a neighbor is contracted, then only the neighbors are redone
+            Heap pq = new Heap( n );
+            for ( int v = 0;  v < n;  v++ ) {
+                pq.decrease( v,priority( v,gone ) );
+            }
+            int order = 0;
+            int sc = 0;
+            while ( pq.isNotDone() ) {
+                int v = pq.deleteMin();
+                sc += contract( v,false );
+                // whatever v still borders is contracted later, so these are its upward edges
+                int d = deg[v];
+                upEdges[v] = new int [3*d];
+                for ( int j = 0;  j < d;  j++ ) {
+                    int u = nb[v][j];
+                    upEdges[v][3*j] = u;
+                    upEdges[v][3*j+1] = km[v][j];
+                    upEdges[v][3*j+2] = mid[v][j];
+                    unlink( u,v );
+                    gone[u]++;
+                }
+                for ( int j = 0;  j < d;  j++ ) {
+                    pq.change( nb[v][j],priority( nb[v][j],gone ) );
+                }
+                nb[v] = null;
+                km[v] = null;
+                mid[v] = null;
+                rank[v] = order++;
+            }
+
+            int [] offsets = new int [n+1];
+            for ( int v = 0;  v < n;  v++ ) {
+                offsets[v+1] = offsets[v]+upEdges[v].length/3;
+            }
+            int [] targets = new int [offsets[n]];
+            int [] weights = new int [offsets[n]];
+            via = new int [offsets[n]];
+            for ( int v = 0;  v < n;  v++ ) {
+                for ( int j = 0;  j < upEdges[v].length;  j += 3 ) {
+                    targets[offsets[v]+j/3] = upEdges[v][j];
+                    weights[offsets[v]+j/3] = upEdges[v][j+1];
+                    via[offsets[v]+j/3] = upEdges[v][j+2];
+                }
+            }
+            up = new Graph( offsets,targets,weights );
+            nb = null;
+            km = null;
+            mid = null;
+            deg = null;
+            wdist = null;
+            hops = null;
+            touched = null;
+            wqueue = null;
+            shortcuts = sc;
+            buildNanos = System.nanoTime()-t0;
+        }
+
+        /*-----------------------------------------------------------*/
+        /* methods: Ch
+        /*-----------------------------------------------------------*/
+
+        /* FIND(): the spot of w in the adjacency of u, -1 if they are not neighbors */
+        private int find( int u,int w ) {
+
+            for ( int j = 0;  j < deg[u];  j++ ) {
+                if ( nb[u][j] == w ) {
+                    return( j );
+                }
+            }
+            return( -1 );
+        }
+
+        /* LINK(): an edge u-w of k km, skipping m (-1 for a border), unless u-w is already as short.
+           Only the side of u, the caller does w */
+        private void link( int u,int w,int k,int m ) {
+
+            int j = find( u,w );
+            if ( j < 0 ) {
+                if ( deg[u] == nb[u].length ) { // full, double it
+                    nb[u] = Arrays.copyOf( nb[u],2*deg[u] );
+                    km[u] = Arrays.copyOf( km[u],2*deg[u] );
+                    mid[u] = Arrays.copyOf( mid[u],2*deg[u] );
+                }
+                j = deg[u]++;
+                nb[u][j] = w;
+            } else if ( km[u][j] <= k ) {
+                return;
+            }
+            km[u][j] = k;
+            mid[u][j] = m;
+        }
+
+        /* UNLINK(): takes w out of the adjacency of u, the last neighbor moves into its spot */
+        private void unlink( int u,int w ) {
+
+            int j = find( u,w );
+            int last = --deg[u];
+            nb[u][j] = nb[u][last];
+            km[u][j] = km[u][last];
+            mid[u][j] = mid[u][last];
+        }
+
+        /* PRIORITY(): shortcuts contracting v would add, minus the edges it removes, plus its contracted neighbors */
+        private int priority( int v,int [] gone ) {
+            return( contract( v,true )-deg[v]+gone[v] );
+        }
+
+        /* CONTRACT(): adds a shortcut between two neighbors of v whenever the path through v is the only
+           shortest one (no witness path around v). With simulate, they are only counted, with a shorter witness
+           search */
+        private int contract( int v,boolean simulate ) {
+
+            int d = deg[v];
+            int [] nv = nb[v];
+            int [] kv = km[v];
+            int added = 0;
+            for ( int i = 0;  i < d;  i++ ) {
+                int u = nv[i];
+                int max = 0; // longest path through v that has to be beaten
+                for ( int j = i+1;  j < d;  j++ ) {
+                    max = Math.max( max,kv[i]+kv[j] );
+                }
+                if ( i+1 < d ) {
+                    witness( u,v,max,(simulate ? SIMULATE_LIMIT : WITNESS_LIMIT),(simulate ? SIMULATE_HOPS : WITNESS_HOPS) );
+                }
+                for ( int j = i+1;  j < d;  j++ ) {
+                    int w = nv[j];
+                    int k = kv[i]+kv[j];
+                    if ( wdist[w] > k ) { // no witness, the shortcut u-w is needed
+                        added++;
+                        if ( !simulate ) {
+                            link( u,w,k,v );
+                            link( w,u,k,v );
+                        }
+                    }
+                }
+                for ( int j = 0;  j < count;  j++ ) {
+                    wdist[touched[j]] = Integer.MAX_VALUE;
+                }
+                count = 0;
+            }
+            return( added );
+        }
+
+        /* WITNESS(): Dijkstra's from u that skips v, up to max km, limit settled vertices or paths of most borders.
+           Contracted vertices are not in the adjacency any more. Fills wdist[] and touched[] */
+        private void witness( int u,int v,int max,int limit,int most ) {
+
+            Heap queue = wqueue;
+            queue.clear();
+            wdist[u] = 0;
+            hops[u] = 0;
+            touched[count++] = u;
+            queue.decrease( u,0 );
+            int settled = 0;
+            while ( queue.isNotDone() && settled < limit && queue.min() <= max ) {
+                int x = queue.deleteMin();
+                settled++;
+                int dx = wdist[x];
+                if ( hops[x] == most ) {
+                    continue; // a witness ends here
+                }
+                for ( int j = 0;  j < deg[x];  j++ ) {
+                    int y = nb[x][j];
+                    int dy = dx+km[x][j];
+                    if ( y != v && dy < wdist[y] ) {
+                        if ( wdist[y] == Integer.MAX_VALUE ) {
+                            touched[count++] = y;
+                        }
+                        wdist[y] = dy;
+                        hops[y] = hops[x]+1;
+                        queue.decrease( y,dy );
+                    }
+                }
+            }
+        }
+
+        /* QUERY(): upward search from s and from t until neither side can beat the best meeting point,
+           then the shortcuts are unpacked. Returns the vertices on the shortest path, null if none */
+        public int [] query( int s,int t ) {
+
+            long t0 = System.nanoTime();
+            Workspace w = Workspace.take( n );
+            Heap [] queue = w.queue;
+            int [][] prev = w.prev; // only read along paths, every vertex on one was set in this search
+            w.set( 0,s,0,-1 );
+            w.set( 1,t,0,-1 );
+            queue[0].decrease( s,0 );
+            queue[1].decrease( t,0 );
+            int best = (s == t ? 0 : Integer.MAX_VALUE);
+            int meet = s;
+            while ( queue[0].isNotDone() || queue[1].isNotDone() ) {
+                int k = (!queue[1].isNotDone() ||
+                        (queue[0].isNotDone() && queue[0].min() <= queue[1].min()) ? 0 : 1);
+                if ( queue[k].min() >= best ) {
+                    break; // the smaller side can not improve, so neither can the other
+                }
+                int u = queue[k].deleteMin();
+                int du = w.dist[k][u];
+                for ( int e = up.offsets[u];  e < up.offsets[u+1];  e++ ) {
+                    int v = up.targets[e];
+                    int newDist = du+up.weights[e];
+                    int dv = w.dist( k,v );
+                    if ( newDist < dv ) {
+                        w.set( k,v,newDist,u );
+                        queue[k].decrease( v,newDist );
+                        dv = newDist;
+                    }
+                    int other = w.dist( 1-k,v );
+                    if ( other != Integer.MAX_VALUE && (dv+other < best || (dv+other == best && (v == s || v == t))) ) {
+                        best = dv+other; // on a tie, meeting at an end does not go past it
+                        meet = v;
+                    }
+                }
+            }
+            int [] y = null;
+            if ( best != Integer.MAX_VALUE ) {
+                // s .. meet .. t in the upward graph, then every shortcut is replaced by its two halves
+                List<Integer> top = new ArrayList<>();
+                for ( int i = meet;  i != -1;  i = prev[0][i] ) {
+                    top.add( 0,i );
+                }
+                for ( int i = prev[1][meet];  i != -1;  i = prev[1][i] ) {
+                    top.add( i );
+                }
+                List<Integer> path = new ArrayList<>();
+                path.add( s );
+                for ( int j = 1;  j < top.size();  j++ ) {
+                    unpack( top.get( j-1 ),top.get( j ),path );
+                }
+                y = Trip.simple( path );
+            }
+            Workspace.give( w );
+            queries.increment();
+            queryNanos.add( System.nanoTime()-t0 );
+            return( y );
+        }
+
+        /* UNPACK(): adds the vertices after a up to b to path, replacing shortcuts by the edges they skip */
+        private void unpack( int a,int b,List<Integer> path ) {
+
+            int m = via( a,b );
+            if ( m < 0 ) { // original border
+                path.add( b );
+                return;
+            }
+            unpack( a,m,path );
+            unpack( m,b,path );
+        }
+
+        /* VIA(): the vertex the edge between a and b skips, -1 for a border. The edge is kept by the lower one */
+        private int via( int a,int b ) {
+
+            int lo = (rank[a] < rank[b] ? a : b);
+            int hi = (lo == a ? b : a);
+            for ( int e = up.offsets[lo];  e < up.offsets[lo+1];  e++ ) {
+                if ( up.targets[e] == hi ) {
+                    return( via[e] );
+                }
+            }
+            return( -1 );
+        }
+
+        @Override
+        public String toString() {
+            long q = queries.sum();
+            return( String.format( "contraction hierarchies: %d shortcuts, built in %.1f ms, %d queries, %.1f us per query",
+                    shortcuts,buildNanos/1e6,q,(q == 0 ? 0 : queryNanos.sum()/1e3/q) ) );
+        }
+    }
+
+    public static class Hubs { // 2-hop hub labels, built by pruned landmark labeling
+
+        /*-----------------------------------------------------------*/
+        /* data members: Hubs
+        /*
+        /* every vertex has a label: a list of (hub, km, next) sorted
+        /* by hub. Any two vertices share a hub on a shortest path
+        /* between them, so their distance is the smallest sum of km
+        /* over the hubs both labels have.
+        /*-----------------------------------------------------------*/
+
+        final int [] order; // order[r] is the vertex of hub rank r, busiest vertices first
+        final int [] start; // label of v is start[v] .. start[v+1]-1
+        final int [] hub;   // hub rank, increasing within a label
+        final int [] km;    // distance to the hub
+        final int [] next;  // next vertex from v towards the hub, -1 at the hub itself
+        public long buildNanos;
+
+        /*-----------------------------------------------------------*/
+        /* constructor: Hubs
+        /*-----------------------------------------------------------*/
+
+        Hubs( int [] o,int [] s,int [] h,int [] k,int [] x ) {
+            order = o;
+            start = s;
+            hub = h;
+            km = k;
+            next = x;
+        }
+
+        Hubs( Graph g ) {
+
+            long t0 = System.nanoTime();
+            int n = g.n;
+            Integer [] byDegree = new Integer [n];
+            for ( int v = 0;  v < n;  v++ ) {
+                byDegree[v] = v;
+            }
+            Arrays.sort( byDegree,(a,b) -> (g.degree( b ) != g.degree( a ) ?
+                    g.degree( b )-g.degree( a ) : a-b) );
+            order = new int [n];
+            for ( int r = 0;  r < n;  r++ ) {
+                order[r] = byDegree[r];
+            }
+
+            // labels grow while building, count[v] entries of lh/lk/lx[v] are used
+            int [][] lh = new int [n][4];
+            int [][] lk = new int [n][4];
+            int [][] lx = new int [n][4];
+            int [] count = new int [n];
+            int [] dist = new int [n];
+            int [] prev = new int [n];
+            int [] tmp = new int [n]; // km from the current hub to the hubs in its own label, by rank
+            Arrays.fill( dist,Integer.MAX_VALUE );
+            Arrays.fill( tmp,Integer.MAX_VALUE );
+            List<Integer> touched = new ArrayList<>();
+            Heap queue = new Heap( n ); // one for all the hubs, empty again after each
+
+            for ( int r = 0;  r < n;  r++ ) {
+                int h = order[r];
+                for ( int j = 0;  j < count[h];  j++ ) {
+                    tmp[lh[h][j]] = lk[h][j];
+                }
+                // Dijkstra's from h, pruned wherever the labels so far already give the distance
+                queue.clear();
+                dist[h] = 0;
+                prev[h] = -1;
+                touched.add( h );
+                queue.decrease( h,0 );
+                while ( queue.isNotDone() ) {
+                    int u = queue.deleteMin();
+                    int d = dist[u];
+                    boolean covered = false;
+                    for ( int j = 0;  j < count[u] && !covered;  j++ ) {
+                        covered = (tmp[lh[u][j]] != Integer.MAX_VALUE && tmp[lh[u][j]]+lk[u][j] <= d);
+                    }
+                    if ( covered ) {
+                        continue;
+                    }
+                    if ( count[u] == lh[u].length ) {
+                        lh[u] = Arrays.copyOf( lh[u],2*count[u] );
+                        lk[u] = Arrays.copyOf( lk[u],2*count[u] );
+                        lx[u] = Arrays.copyOf( lx[u],2*count[u] );
+                    }
+                    lh[u][count[u]] = r;
+                    lk[u][count[u]] = d;
+                    lx[u][count[u]++] = prev[u];
+                    for ( int e = g.offsets[u];  e < g.offsets[u+1];  e++ ) {
+                        int v = g.targets[e];
+                        int newDist = d+g.weights[e];
+                        if ( newDist < dist[v] ) {
+                            if ( dist[v] == Integer.MAX_VALUE ) {
+                                touched.add( v );
+                            }
+                            dist[v] = newDist;
+                            prev[v] = u;
+                            queue.decrease( v,newDist );
+                        }
+                    }
+                }
+                for ( int v : touched ) {
+                    dist[v] = Integer.MAX_VALUE;
+                }
+                touched.clear();
+                for ( int j = 0;  j < count[h];  j++ ) {
+                    tmp[lh[h][j]] = Integer.MAX_VALUE;
+                }
+            }
+
+            // packing the labels into flat arrays
+            start = new int [n+1];
+            for ( int v = 0;  v < n;  v++ ) {
+                start[v+1] = start[v]+count[v];
+            }
+            hub = new int [start[n]];
+            km = new int [start[n]];
+            next = new int [start[n]];
+            for ( int v = 0;  v < n;  v++ ) {
+                System.arraycopy( lh[v],0,hub,start[v],count[v] );
+                System.arraycopy( lk[v],0,km,start[v],count[v] );
+                System.arraycopy( lx[v],0,next,start[v],count[v] );
+            }
+            buildNanos = System.nanoTime()-t0;
+        }
+
+        /*-----------------------------------------------------------*/
+        /* methods: Hubs
+        /*-----------------------------------------------------------*/
+
+        /* BEST(): the entry in the label of s of the best hub shared with t, -1 if they share none. Of hubs
+           just as good, s or t itself wins, so the two halves of the path do not go past an end */
+        private int best( int s,int t ) {
+
+            int i = start[s];
+            int j = start[t];
+            int b = -1;
+            long min = Long.MAX_VALUE;
+            while ( i < start[s+1] && j < start[t+1] ) { // merge of two sorted labels
+                if ( hub[i] < hub[j] ) {
+                    i++;
+                } else if ( hub[i] > hub[j] ) {
+                    j++;
+                } else {
+                    long d = (long) km[i]+km[j];
+                    if ( d < min || (d == min && (order[hub[i]] == s || order[hub[i]] == t)) ) {
+                        min = d;
+                        b = i;
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            return( b );
+        }
+
+        /* DISTANCE(): total km of the shortest path from s to t, -1 if there is none */
+        public int distance( int s,int t ) {
+
+            int b = best( s,t );
+            return( (b < 0 ? -1 : km[b]+km[find( t,hub[b] )]) );
+        }
+
+        /* PATH(): the vertices on the shortest path from s to t, following the next vertex of the
+           shared hub from both ends. null if there is none */
+        public int [] path( int s,int t ) {
+
+            if ( s == t ) {
+                return( new int [] { s } );
+            }
+            int b = best( s,t );
+            if ( b < 0 ) {
+                return( null );
+            }
+            int r = hub[b];
+            List<Integer> y = new ArrayList<>();
+            for ( int v = s;  v != order[r];  v = next[find( v,r )] ) {
+                y.add( v );
+            }
+            int l = y.size();
+            for ( int v = t;  v != order[r];  v = next[find( v,r )] ) {
+                y.add( l,v ); // the half from t is walked backwards
+            }
+            y.add( l,order[r] );
+            return( Trip.simple( y ) ); // on ties, the halves can still overlap
+        }
+
+        /* FIND(): the entry of hub rank r in the label of v, using binary search */
+        private int find( int v,int r ) {
+
+            int b = start[v];
+            int t = start[v+1]-1;
+            while ( b < t ) {
+                int m = ((b+t) >>> 1);
+                if ( hub[m] < r ) {
+                    b = m+1;
+                } else {
+                    t = m;
+                }
+            }
+            return( b );
+        }
+
+        @Override
+        public String toString() {
+            int n = order.length;
+            int max = 0;
+            for ( int v = 0;  v < n;  v++ ) {
+                max = Math.max( max,start[v+1]-start[v] );
+            }
+            return( String.format( "hub labels: %d entries, %.1f per vertex (max %d), %d KB, built in %.1f ms",
+                    hub.length,(double) hub.length/n,max,(3L*4*hub.length+4L*(2*n+1))/1024,buildNanos/1e6 ) );
+        }
+    }
+
+    public interface MetricsMXBean { // what Metrics shows over JMX, as IRoadTrip:type=Metrics
+
+        Map<String,Long> getFindPath();     // count, timed, then mean, p50, p90, p99 and max in ns
+        Map<String,Long> getGetDistance();
+        Map<String,Long> getLookup();       // name lookups, index()
+        long getTrees();                    // shortest path trees run by findTree()
+        long getSettled();                  // vertices settled by them
+        long getRelaxed();                  // edges relaxed by them
+        long getInserts();                  // heap inserts by them
+        long getDecreases();                // heap decrease-keys by them
+        Map<String,Long> getLoadTimes();    // ns of every stage of the last load
+        Map<String,Long> getUpdates();      // border changes: count, then mean, p50, p90, p99 and max in ns
+        long getUpdateTrees();              // trees repaired by them
+        long getUpdateTouched();            // vertices touched by the repairs
+        String dump();
+        void reset();
+    }
+
+    public static class Metrics implements MetricsMXBean { // counters and latency histograms of the queries
+
+        /*-----------------------------------------------------------*/
+        /* data members: Metrics
+        /*
+        /* everything is a LongAdder, striped per thread, so recording
+        /* never takes a lock. findTree() counts in locals and adds
+        /* them once per tree. getDistance() and lookups take about as
+        /* long as System.nanoTime() itself, so only 1 in 64 of them is
+        /* timed and counted (as 64); their counts are estimates.
+        /*-----------------------------------------------------------*/
+
+        final Histogram findPath = new Histogram( 1 );
+        final Histogram getDistance = new Histogram( 64 );
+        final Histogram lookup = new Histogram( 64 );
+        private final LongAdder trees = new LongAdder();
+        private final LongAdder settled = new LongAdder();
+        private final LongAdder relaxed = new LongAdder();
+        private final LongAdder inserts = new LongAdder();
+        private final LongAdder decreases = new LongAdder();
+        final Histogram updates = new Histogram( 1 );
+        private final LongAdder updateTrees = new LongAdder();
+        private final LongAdder updateTouched = new LongAdder();
+        private ScheduledExecutorService dumper; // -metrics, null if off
+
+        /*-----------------------------------------------------------*/
+        /* methods: Metrics
+        /*-----------------------------------------------------------*/
+
+        /* TREE(): records one run of findTree() */
+        void tree( int s,int r,int i,int d ) {
+
+            trees.increment();
+            settled.add( s );
+            relaxed.add( r );
+            inserts.add( i );
+            decreases.add( d );
+        }
+
+        /* UPDATE(): records the work of one border change, its time is in updates */
+        void update( Update up ) {
+
+            updateTrees.add( up.trees );
+            updateTouched.add( up.touched );
+        }
+
+        /* REGISTER(): makes the metrics visible over JMX (jconsole, jcmd and the like) */
+        void register() {
+
+            try {
+                ObjectName name = new ObjectName( "IRoadTrip:type=Metrics" );
+                if ( !ManagementFactory.getPlatformMBeanServer().isRegistered( name ) ) {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean( this,name );
+                }
+            } catch ( JMException e ) {
+                System.out.println( "** metrics: could not register: "+e.getMessage()+" **" );
+            }
+        }
+
+        /* DUMPEVERY(): prints dump() to stderr every so many seconds, on a daemon thread */
+        synchronized void dumpEvery( int seconds ) {
+
+            if ( dumper != null ) {
+                dumper.shutdownNow();
+            }
+            dumper = Executors.newSingleThreadScheduledExecutor( x -> {
+                Thread t = new Thread( x,"metrics" );
+                t.setDaemon( true );
+                return( t );
+            } );
+            dumper.scheduleAtFixedRate( () -> System.err.print( dump() ),seconds,seconds,TimeUnit.SECONDS );
+        }
+
+        public Map<String,Long> getFindPath() {
+            return( findPath.summary() );
+        }
+
+        public Map<String,Long> getGetDistance() {
+            return( getDistance.summary() );
+        }
+
+        public Map<String,Long> getLookup() {
+            return( lookup.summary() );
+        }
+
+        public long getTrees() {
+            return( trees.sum() );
+        }
+
+        public long getSettled() {
+            return( settled.sum() );
+        }
+
+        public long getRelaxed() {
+            return( relaxed.sum() );
+        }
+
+        public long getInserts() {
+            return( inserts.sum() );
+        }
+
+        public long getDecreases() {
+            return( decreases.sum() );
+        }
+
+        public Map<String,Long> getUpdates() {
+            return( updates.summary() );
+        }
+
+        public long getUpdateTrees() {
+            return( updateTrees.sum() );
+        }
+
+        public long getUpdateTouched() {
+            return( updateTouched.sum() );
+        }
+
+        public Map<String,Long> getLoadTimes() {
+            RoutingGraph r = routing; // the times of the load that made it, never changed
+            return( (r == null ? Map.of() : r.loadTimes()) );
+        }
+
+        /* DUMP(): all of the metrics as text, one line each */
+        public String dump() {
+
+            StringBuilder y = new StringBuilder();
+            y.append( String.format( "%-12s %s%n","findPath",findPath ) );
+            y.append( String.format( "%-12s %s%n","getDistance",getDistance ) );
+            y.append( String.format( "%-12s %s%n","lookup",lookup ) );
+            long n = Math.max( trees.sum(),1 );
+            y.append( String.format( "%-12s %d, per tree: %.1f settled, %.1f relaxed, %.1f inserts, %.1f decreases%n",
+                    "trees",trees.sum(),(double) settled.sum()/n,(double) relaxed.sum()/n,(double) inserts.sum()/n,
+                    (double) decreases.sum()/n ) );
+            long u = Math.max( updates.count.sum(),1 );
+            y.append( String.format( "%-12s %s, per update: %.1f trees, %.1f touched%n","updates",updates,
+                    (double) updateTrees.sum()/u,(double) updateTouched.sum()/u ) );
+            for ( Map.Entry<String,Long> e : getLoadTimes().entrySet() ) {
+                y.append( String.format( "%-12s %s %.3f ms%n","load",e.getKey(),e.getValue()/1e6 ) );
+            }
+            return( y.toString() );
+        }
+
+        /* RESET(): starts counting again. The load times stay */
+        public void reset() {
+
+            findPath.reset();
+            getDistance.reset();
+            lookup.reset();
+            trees.reset();
+            settled.reset();
+            relaxed.reset();
+            inserts.reset();
+            decreases.reset();
+            updates.reset();
+            updateTrees.reset();
+            updateTouched.reset();
+        }
+    }
+
+    static class Histogram { // latencies in power of 2 buckets of ns, without locks
+
+        /*-----------------------------------------------------------*/
+        /* data members: Histogram
+        /*-----------------------------------------------------------*/
+
+        private final int every; // 1 in every calls is timed, and counted as every calls
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder [] bucket = new LongAdder [64]; // bucket[i]: ns below 2^i (and 2^(i-1) or more)
+        private final LongAdder count = new LongAdder(); // calls timed
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator( Math::max,0 );
+
+        /*-----------------------------------------------------------*/
+        /* constructor: Histogram
+        /*-----------------------------------------------------------*/
+
+        Histogram( int n ) {
+            every = n;
+            for ( int i = 0;  i < bucket.length;  i++ ) {
+                bucket[i] = new LongAdder();
+            }
+        }
+
+        /*-----------------------------------------------------------*/
+        /* methods: Histogram
+        /*-----------------------------------------------------------*/
+
+        /* START() / STOP(): around a call. start() returns 0 for a call that is not sampled, which costs nothing more */
+        long start() {
+            return( (every == 1 || ThreadLocalRandom.current().nextInt( every ) == 0 ? System.nanoTime() : 0) );
+        }
+
+        void stop( long t0 ) {
+
+            if ( t0 != 0 ) {
+                calls.add( every );
+                record( System.nanoTime()-t0 );
+            }
+        }
+
+        /* RECORD(): adds one latency */
+        void record( long ns ) {
+
+            bucket[64-Long.numberOfLeadingZeros( Math.max( ns,0 ) )].increment();
+            count.increment();
+            sum.add( ns );
+            max.accumulate( ns );
+        }
+
+        /* PERCENTILE(): upper bound of the bucket that the p-th percentile falls in, 0 if empty */
+        long percentile( double p ) {
+
+            long n = count.sum();
+            long want = (long) Math.ceil( n*p/100 );
+            long seen = 0;
+            for ( int i = 0;  i < bucket.length && n > 0;  i++ ) {
+                seen += bucket[i].sum();
+                if ( seen >= want ) {
+                    return( Math.min( (1L << i)-1,max.get() ) );
+                }
+            }
+            return( 0 );
+        }
+
+        /* SUMMARY(): count, timed, mean, p50, p90, p99 and max, in ns */
+        Map<String,Long> summary() {
+
+            Map<String,Long> y = new LinkedHashMap<>();
+            long n = count.sum();
+            y.put( "count",calls.sum() );
+            y.put( "timed",n );
+            y.put( "mean",(n == 0 ? 0 : sum.sum()/n) );
+            y.put( "p50",percentile( 50 ) );
+            y.put( "p90",percentile( 90 ) );
+            y.put( "p99",percentile( 99 ) );
+            y.put( "max",max.get() );
+            return( y );
+        }
+
+        void reset() {
+
+            for ( LongAdder b : bucket ) {
+                b.reset();
+            }
+            calls.reset();
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+
+        @Override
+        public String toString() {
+            Map<String,Long> s = summary();
+            return( String.format( "%d calls, mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us",
+                    s.get( "count" ),s.get( "mean" )/1e3,s.get( "p50" )/1e3,s.get( "p90" )/1e3,s.get( "p99" )/1e3,
+                    s.get( "max" )/1e3 ) );
+        }
+    }
+
+    @Name( "IRoadTrip.LoadStage" )
+    @Label( "Load Stage" )
+    @Category( "IRoadTrip" )
+    @Description( "One stage of loading the three files (or the snapshot)" )
+    @StackTrace( false )
+    static class LoadEvent extends Event { // flight recorder event, from begin() to stage()
+
+        @Label( "Stage" )
+        String stage;
+    }
+
+    @Name( "IRoadTrip.Route" )
+    @Label( "Route Query" )
+    @Category( "IRoadTrip" )
+    @Description( "One findPath() query" )
+    @StackTrace( false )
+    static class RouteEvent extends Event { // flight recorder event, around findPath()
+
+        @Label( "Origin" )
+        String origin;
+
+        @Label( "Destination" )
+        String destination;
+
+        @Label( "Search" )
+        String search;
+
+        @Label( "Vertices Settled" )
+        int settled;
+
+        @Label( "Legs" )
+        int legs;
+
+        @Label( "Unreachable" )
+        boolean unreachable;
+    }
+
+    public static final class Route { // one shortest path: its vertices, the km of every leg and the total
+
+        /*-----------------------------------------------------------*/
+        /* data members: Route
+        /*-----------------------------------------------------------*/
+
+        public final int [] vertices;   // indexes in borders.txt, from the first country to the second
+        public final int [] km;         // km[j]: the leg from vertices[j] to vertices[j+1]
+        public final int distance;      // total km, -1 if unreachable
+        public final boolean unreachable; // no path, or a name that does not exist
+        private final String [] names;  // country names of the vertices
+
+        /*-----------------------------------------------------------*/
+        /* constructor: Route
+        /*-----------------------------------------------------------*/
+
+        Route( String [] n,int [] v,int [] k ) {
+
+            names = n;
+            vertices = v;
+            km = k;
+            int d = 0;
+            for ( int x : k ) {
+                d += x;
+            }
+            distance = d;
+            unreachable = false;
+        }
+
+        Route( String [] n ) { // unreachable
+
+            names = n;
+            vertices = new int [0];
+            km = new int [0];
+            distance = -1;
+            unreachable = true;
+        }
+
+        /*-----------------------------------------------------------*/
+        /* methods: Route
+        /*-----------------------------------------------------------*/
+
+        /* COUNTRY(): name of the j-th country on the route */
+        public String country( int j ) {
+            return( names[vertices[j]] );
+        }
+
+        /* LEGS(): the legs formatted like findPath() returns them, a single "" if unreachable.
+           Only made when asked for */
+        public List<String> legs() {
+
+            List<String> y = new ArrayList<>( Math.max( km.length,1 ) );
+            if ( unreachable ) {
+                y.add( "" );
+            }
+            for ( int j = 0;  j < km.length;  j++ ) {
+                y.add( leg( names[vertices[j]],names[vertices[j+1]],km[j] ) );
+            }
+            return( y );
+        }
+
+        @Override
+        public String toString() {
+            return( (unreachable ? "no route" : String.join( ", ",legs() )+", "+distance+" km.") );
+        }
     }
 
-    /* NUM(): finds country number in stateNums using binary search */
-    private static int num( String s ) {
-        int b,m,t;
+    public static final class Update { // one border change, and what repairing the shortest paths took
 
-        b = 0;
-        t = stateNums.length-1;
-        while ( b < t ) {
-            m = ((b+t) >> 1);
-            if ( s.compareTo( stateNums[m][0] ) <= 0 ) {
-                t = m;
-            } else {
-                b = m+1;
-            }
-        }
-        // returns state number as an int
-        return( Integer.parseInt( stateNums[t][1] ) );
-    }
+        /*-----------------------------------------------------------*/
+        /* data members: Update
+        /*-----------------------------------------------------------*/
 
-    /* SORT0(): uses bubble sort to sort the state names in stateNums[][] in alphabetical order. */
-    private static void sort0() {
-        int n = IRoadTrip.stateNums.length;
+        public final String from, to;   // the two countries
+        final int [] u, v;              // the two directions of the border, u[k] -> v[k]
+        final int [] before, after;     // km of each direction before and after, -1 if closed
+        public int trees;               // cached trees and Table rows the change reached, and were repaired
+        public long touched;            // vertices cut off or settled again in them, the work done
+        public long nanos;              // from the call until the new graph was published
 
-        for ( int i = 1;  i < n;  i++ ) {
-            for ( int j = 0;  j < n-i;  j++ ) {
-                // if s1.compareTo(s2) is negative, s1 should proceed s2 alphabetically
-                if ( IRoadTrip.stateNums[j+1][0].compareTo( IRoadTrip.stateNums[j][0] ) < 0  ) {
+        /*-----------------------------------------------------------*/
+        /* constructor: Update
+        /*-----------------------------------------------------------*/
 
-                    // first: swap strings in column 0, which is the state name
-                    String s = IRoadTrip.stateNums[j][0];
-                    IRoadTrip.stateNums[j][0] = IRoadTrip.stateNums[j+1][0];
-                    IRoadTrip.stateNums[j+1][0]= s;
+        Update( String c1,String c2,int a,int b ) {
 
-                    // second: swap strings in column 1, which is the state number
-                    s = IRoadTrip.stateNums[j][1];
-                    IRoadTrip.stateNums[j][1] = IRoadTrip.stateNums[j+1][1];
-                    IRoadTrip.stateNums[j+1][1] = s;
-                }
-            }
+            from = c1;
+            to = c2;
+            u = new int [] { a,b };
+            v = new int [] { b,a };
+            before = new int [2];
+            after = new int [2];
+        }
+
+        /*-----------------------------------------------------------*/
+        /* methods: Update
+        /*-----------------------------------------------------------*/
+
+        /* LONGER() / SHORTER(): direction k got longer (or closed), or shorter (or opened) */
+        boolean longer( int k ) {
+            return( before[k] >= 0 && (after[k] < 0 || after[k] > before[k]) );
         }
-    }
 
-    /* SORT1(): uses bubble sort to sort each block in the distances[][], keying on numB. */
-    private static void sort1() {
-        int beginBlock,endBlock,i,j,k,x;
+        boolean shorter( int k ) {
+            return( after[k] >= 0 && (before[k] < 0 || after[k] < before[k]) );
+        }
 
-        for ( i = 0;  i < block;  i++ ) {
-            // determines when blocks start and end. block 64 is flawed, it is double the size of others
-            int a = (i <= 64 ? 202*i : 202*i+202); // begin block
-            int b = (i != 64 ? a+201 : a+403); // end block
+        /* REACHES(): true if the change can alter the tree: a longer edge is in it, or a shorter one beats it */
+        boolean reaches( int [] dist,int [] prev ) {
 
-            for ( j = 1;  j < b-a+1;  j++ ) {
-                for ( k = 0;  k < b-a+1-j;  k++ ) {
-                    // reminder: we are in a block, so column 0 (numa) will be the same
-                    if ( distances[a+k+1][1] < distances[a+k][1] ) {
+            for ( int k = 0;  k < 2;  k++ ) {
+                if ( longer( k ) && prev[v[k]] == u[k] ) {
+                    return( true );
+                }
+                if ( shorter( k ) && dist[u[k]] != Integer.MAX_VALUE && dist[u[k]]+after[k] < dist[v[k]] ) {
+                    return( true );
+                }
+            }
+            return( false );
+        }
 
-                        // first: swap numb (country 2)
-                        x = distances[a+k][1];
-                        distances[a+k][1] = distances[a+k+1][1];
-                        distances[a+k+1][1] = x;
+        /* the same for the row of a Table starting at o, where prev[] is a char and none is NONE */
+        boolean reaches( int [] dist,char [] prev,int o,char none ) {
 
-                        // second: swap distance
-                        x = distances[a+k][2];
-                        distances[a+k][2] = distances[a+k+1][2];
-                        distances[a+k+1][2] = x;
-                    }
+            for ( int k = 0;  k < 2;  k++ ) {
+                if ( longer( k ) && prev[o+v[k]] != none && prev[o+v[k]] == u[k] ) {
+                    return( true );
+                }
+                if ( shorter( k ) && dist[o+u[k]] != Integer.MAX_VALUE && dist[o+u[k]]+after[k] < dist[o+v[k]] ) {
+                    return( true );
                 }
             }
+            return( false );
+        }
+
+        /* KM(): distance of the border now, from the first country to the second, -1 if closed */
+        public int km() {
+            return( after[0] );
+        }
+
+        @Override
+        public String toString() {
+            return( String.format( "%s - %s: %s, %d trees repaired, %d vertices touched, %.1f us",from,to,
+                    (after[0] < 0 && after[1] < 0 ? "closed" : after[0]+" km"),trees,touched,nanos/1e3 ) );
         }
     }
 
-    private static class gNode { // a single node, graph node
+    public static class sTree { // shortest path tree from one source
 
         /*-----------------------------------------------------------*/
-        /* data members: gNode
+        /* data members: sTree
         /*-----------------------------------------------------------*/
 
-        private int vrtx; // index in borders.txt
-        private int wght; // distance in cap dist
-        private gNode link; // a pointer to the next node
+        public final int [] dist; // km from the source, Integer.MAX_VALUE if unreachable
+        public final int [] prev; // vertex before v on the path from the source, -1 if none
 
         /*-----------------------------------------------------------*/
-        /* constructor: gNode
+        /* constructor: sTree
         /*-----------------------------------------------------------*/
 
-        gNode( int v,int d ) {
-            vrtx = v;
-            wght = d;
-            link = null;
+        sTree( int n ) {
+            dist = new int [n];
+            prev = new int [n];
+        }
+
+        sTree( int [] d,int [] p ) {
+            dist = d;
+            prev = p;
         }
     }
 
-    public static class AdjList { // a linked list of gNodes
+    public static class TreeCache { // bounded, lock-free cache of shortest path trees, keyed by source
 
         /*-----------------------------------------------------------*/
-        /* data members: AdjList
+        /* data members: TreeCache
         /*-----------------------------------------------------------*/
 
-        private gNode head, tail;
+        private final int size; // most trees kept, give or take the puts running at the same time
+        private final ConcurrentHashMap<Integer,Entry> map = new ConcurrentHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        private static final class Entry { // a tree and when it was last used, for an approximate LRU
+            final sTree tree;
+            volatile long used;
+
+            Entry( sTree t,long u ) {
+                tree = t;
+                used = u;
+            }
+        }
 
         /*-----------------------------------------------------------*/
-        /* constructor: AdjList
+        /* constructor: TreeCache
         /*-----------------------------------------------------------*/
 
-        AdjList() {
-            head = tail = null; // a linked list
+        TreeCache( int n ) {
+            size = n;
         }
 
         /*-----------------------------------------------------------*/
-		/* methods: AdjList
+        /* methods: TreeCache
         /*-----------------------------------------------------------*/
 
-        /* ADD(): adds gnodes to an adjacency list increasing order by vertex */
-        private void add( gNode q ) {
+        /* REPAIR(): a new cache with the trees of this one, for the border change up, now in g. A tree the
+           change reaches is repaired on a copy by Trip.repair(), the others are shared. The times they were
+           last used go along, so the same tree is evicted next */
+        TreeCache repair( Graph g,Update up ) {
 
-            if ( head == null ) {		// empty list?
-                head = tail = q;
-                return;
-            }
-            if ( q.vrtx < head.vrtx ) {	// at front?
-                q.link = head;
-                head = q;
-                return;
+            TreeCache c = new TreeCache( size );
+            for ( Map.Entry<Integer,Entry> e : map.entrySet() ) {
+                sTree t = e.getValue().tree;
+                if ( up.reaches( t.dist,t.prev ) ) {
+                    sTree x = new sTree( t.dist.clone(),t.prev.clone() );
+                    up.touched += Trip.repair( g,x.dist,x.prev,up );
+                    up.trees++;
+                    t = x;
+                }
+                c.map.put( e.getKey(),new Entry( t,e.getValue().used ) );
             }
-            if ( tail.vrtx < q.vrtx ) {	// at back?
-                tail.link = q;
-                tail = q;
-                return;
+            c.hits.add( hits.sum() );
+            c.misses.add( misses.sum() );
+            c.evictions.add( evictions.sum() );
+            return( c );
+        }
+
+        /* GET(): returns the tree from source s, null if it is not cached */
+        public sTree get( int s ) {
+
+            Entry e = map.get( s );
+            if ( e == null ) {
+                misses.increment();
+                return( null );
             }
-            gNode p = head;			// or in the middle?
-            gNode r = p.link;
-            while ( r.vrtx < q.vrtx ) {
-                p = r;
-                r = r.link;
+            hits.increment();
+            e.used = System.nanoTime();
+            return( e.tree );
+        }
+
+        /* PUT(): caches the tree from source s. When there are too many, the least recently used one goes.
+           Finding it looks at every entry, which is nothing next to the Dijkstra's that made the tree */
+        public void put( int s,sTree t ) {
+
+            map.put( s,new Entry( t,System.nanoTime() ) );
+            while ( map.size() > size ) {
+                Map.Entry<Integer,Entry> old = null;
+                for ( Map.Entry<Integer,Entry> e : map.entrySet() ) {
+                    if ( old == null || e.getValue().used < old.getValue().used ) {
+                        old = e;
+                    }
+                }
+                if ( old != null && map.remove( old.getKey(),old.getValue() ) ) { // another put may have won
+                    evictions.increment();
+                }
             }
-            p.link = q;
-            q.link = r;
         }
 
-        private gNode Head() {
-            return( head );
+        public long hits() {
+            return( hits.sum() );
+        }
+
+        public long misses() {
+            return( misses.sum() );
+        }
+
+        public long evictions() {
+            return( evictions.sum() );
+        }
+
+        @Override
+        public String toString() {
+            return( "trees "+map.size()+"/"+size+", hits "+hits.sum()+", misses "+misses.sum()+
+                    ", evictions "+evictions.sum() );
         }
     }
 
-    private static class qNode {			// queue node, for Dijkstra's
+    public static class Table { // all-pairs shortest paths, precomputed once
 
         /*-----------------------------------------------------------*/
-        /* data members - qNode
+        /* data members: Table
         /*-----------------------------------------------------------*/
 
-        private qNode blink; // backwards link
-        private int vrtx;
-        private int dist;
-        private qNode flink; // forwards link
+        private final int n;        // number of vertices
+        private final String [] country; // names of the vertices
+        private final int [] dist;  // dist[s*n+v]: km from s to v, Integer.MAX_VALUE if unreachable
+        private final char [] prev; // prev[s*n+v]: vertex before v on the path from s, NONE if none
+
+        private static final char NONE = Character.MAX_VALUE;
+        static final int MAX = 46340; // most countries: n*n has to be an int index, and every vertex a char below NONE
 
         /*-----------------------------------------------------------*/
-        /* constructor - qNode
+        /* constructor: Table
         /*-----------------------------------------------------------*/
 
-        qNode( int v,int d ) {
+        Table( RoutingGraph r ) {
 
-            blink = flink = null;
-            vrtx = v;
-            dist = d;
+            if ( !fits( r.countries.length ) ) {
+                throw new IllegalArgumentException( r.countries.length+" countries, a Table holds at most "+MAX );
+            }
+            n = r.countries.length;
+            country = r.countries;
+            dist = new int [n*n];
+            prev = new char [n*n];
+            // one shortest path tree per source, the sources are spread over the fork-join pool
+            IntStream.range( 0,n ).parallel().forEach( s -> {
+                Trip t = new Trip( r ); // a Trip keeps state of its last run, so one per source
+                int [] d = new int [n];
+                int [] p = new int [n];
+                t.findTree( s,d,p );
+                for ( int v = 0;  v < n;  v++ ) {
+                    dist[s*n+v] = d[v];
+                    prev[s*n+v] = (p[v] < 0 ? NONE : (char) p[v]);
+                }
+            } );
         }
-    }
 
-    private static class Queue { // will be a doubly linked list
+        private Table( Table t,int [] d,char [] p ) {
+            n = t.n;
+            country = t.country;
+            dist = d;
+            prev = p;
+        }
 
         /*-----------------------------------------------------------*/
-        /* data members: Queue
+        /* methods: Table
         /*-----------------------------------------------------------*/
 
-        private qNode head;
-        private qNode tail;
+        /* FITS(): true if a Table can hold n countries */
+        static boolean fits( int n ) {
+            return( n <= MAX );
+        }
 
-        /*-----------------------------------------------------------*/
-        /* constructor: Queue
-        /*-----------------------------------------------------------*/
+        /* REPAIR(): a copy of the table for the border change up, now in g. Only the rows the change reaches are
+           repaired, by Trip.repair(), the rest are copied as they are */
+        Table repair( Graph g,Update up ) {
 
-        Queue() {
-            head = tail = null;
+            int [] d2 = dist.clone();
+            char [] p2 = prev.clone();
+            LongAdder touched = new LongAdder();
+            LongAdder rows = new LongAdder();
+            IntStream.range( 0,n ).parallel().forEach( s -> {
+                if ( !up.reaches( d2,p2,s*n,NONE ) ) {
+                    return;
+                }
+                int [] d = Arrays.copyOfRange( d2,s*n,s*n+n );
+                int [] p = new int [n];
+                for ( int v = 0;  v < n;  v++ ) {
+                    p[v] = (p2[s*n+v] == NONE ? -1 : p2[s*n+v]);
+                }
+                touched.add( Trip.repair( g,d,p,up ) );
+                rows.increment();
+                for ( int v = 0;  v < n;  v++ ) {
+                    d2[s*n+v] = d[v];
+                    p2[s*n+v] = (p[v] < 0 ? NONE : (char) p[v]);
+                }
+            } );
+            up.trees += rows.intValue();
+            up.touched += touched.sum();
+            return( new Table( this,d2,p2 ) );
         }
 
-        /*-----------------------------------------------------------*/
-        /* methods: Queue
-        /*-----------------------------------------------------------*/
+        /* DISTANCE(): total km of the shortest path from v0 to v1, -1 if there is none */
+        public int distance( int v0,int v1 ) {
+            int d = dist[v0*n+v1];
+            return( (d == Integer.MAX_VALUE ? -1 : d) );
+        }
 
-        /* ADD(): adds qNodes to a doubly linked list, which will be the queue.
-        The qnode with the minimum distance will be in the front */
-        private void add( qNode q ) {
+        /* ROUTE(): walks the predecessor row of v0 back from v1, same Route as Trip.route() */
+        public Route route( int v0,int v1 ) {
 
-            if ( tail == null ) {		// empty list?
-                head = tail = q;
-                return;
-            }
-            if ( q.dist < head.dist ) {	// at front?
-                head.blink = q;
-                q.flink = head;
-                head = q;
-                return;
+            if ( dist[v0*n+v1] == Integer.MAX_VALUE ) { // no path
+                return( new Route( country ) );
             }
-            if ( tail.dist <= q.dist ) {	// at rear?
-                tail.flink = q;
-                q.blink = tail;
-                tail = q;
-                return;
+            int l = 0;
+            for ( int i = v1;  i != v0;  i = prev[v0*n+i] ) {
+                l++;
             }
-            qNode p = head;			// in the middle?
-            qNode r = p.flink;
-            while ( r.dist < q.dist ) {
-                p = r;
-                r = r.flink;
+            int [] path = new int [l+1];
+            int [] km = new int [l];
+            for ( int i = v1;  0 < l;  i = prev[v0*n+i] ) { // unwinding the predecessor row
+                path[l] = i;
+                // the leg is the difference of the two distances from v0, no capdist lookup needed
+                km[l-1] = dist[v0*n+i]-dist[v0*n+prev[v0*n+i]];
+                l--;
             }
-            p.flink = r.blink = q;
-            q.blink = p;
-            q.flink = r;
+            path[0] = v0;
+            return( new Route( country,path,km ) );
         }
+    }
 
-        /* DECREASE(): update distance to every vertex adjacent to u, or country1 */
-        private void decrease( int v,int newDist ) {
+    private static class Trie { // prefix tree of lower case names, for autocomplete
 
-            qNode p = head;
-            while ( p.vrtx != v ) {		// find qNode
-                p = p.flink;
-            }
-            qNode q = new qNode( v,newDist );
-            // replace
-            remove( p );
-            add( q );
-        }
+        /*-----------------------------------------------------------*/
+        /* data members: Trie
+        /*-----------------------------------------------------------*/
 
-        /* DELETEMIN(): removes the first node from the queue */
-        private int deleteMin() {
+        private final TreeMap<Character,Trie> next = new TreeMap<>(); // children, in alphabetical order
+        private int id = -1; // index in borders.txt of the country a name ends here for, -1 if none
 
-            int u = head.vrtx; // storing vertex of head
-            head = head.flink;
-            if ( head == null ) { // removing node
-                tail = null;
-            } else {
-                head.blink = null;
+        /*-----------------------------------------------------------*/
+        /* methods: Trie
+        /*-----------------------------------------------------------*/
+
+        /* ADD(): adds a name of country i */
+        private void add( String name,int i ) {
+
+            Trie t = this;
+            for ( char c : key( name ).toCharArray() ) {
+                t = t.next.computeIfAbsent( c,k -> new Trie() );
+            }
+            if ( t.id < 0 ) {
+                t.id = i;
             }
-            return( u );
         }
 
-        /* ISNOTDONE(): ensures the queue still holds neighbors  */
-        private Boolean isNotDone() {
-            return( (head != null ) &&
-                    (head.dist != Integer.MAX_VALUE) );
+        /* COMPLETE(): up to n countries with a name starting with prefix, in alphabetical order of the names */
+        private List<String> complete( String prefix,int n,String [] countries ) {
+
+            Trie t = this;
+            for ( int j = 0;  j < prefix.length() && t != null;  j++ ) {
+                t = t.next.get( prefix.charAt( j ) );
+            }
+            Set<Integer> found = new LinkedHashSet<>();
+            if ( t != null ) {
+                t.collect( found,n );
+            }
+            List<String> y = new ArrayList<>();
+            for ( int i : found ) {
+                y.add( countries[i] );
+            }
+            return( y );
         }
 
-        /* REMOVE(): removes a node from queue */
-        private void remove( qNode p ) {
+        /* COLLECT(): depth first walk below this node, until n countries are found */
+        private void collect( Set<Integer> found,int n ) {
 
-            if ( p == head ) {
-                head = p.flink;
-            } else {
-                p.blink.flink = p.flink;
+            if ( id >= 0 ) {
+                found.add( id );
             }
-            if ( p == tail ) {
-                tail = p.blink;
-            } else {
-                p.flink.blink = p.blink;
+            for ( Trie t : next.values() ) {
+                if ( found.size() >= n ) {
+                    return;
+                }
+                t.collect( found,n );
             }
         }
     }
 
-    public static class Trip {
+    private static class Server { // HTTP front end: /path, /distance and /neighbors, answered in JSON
 
         /*-----------------------------------------------------------*/
-        /* data members: Trip
+        /* data members: Server
         /*-----------------------------------------------------------*/
 
-        public String [] country;
-        public int [][] dist;
-        public AdjList [] adjListA;
-        public int [] numaA_Arr;
+        private static final int BACKLOG = 4096; // connections waiting to be accepted
 
         /*-----------------------------------------------------------*/
-        /* constructor: Trip
+        /* methods: Server
         /*-----------------------------------------------------------*/
 
-        Trip( String [] a,int [][] b,AdjList [] c,
-              int [] e) {
+        /* START(): starts the server on port, it keeps running after main() returns */
+        static void start( int port ) {
 
-            country = a;
-            dist = b;
-            adjListA = c;
-            numaA_Arr = e;
+            HttpServer http;
+            try {
+                http = HttpServer.create( new InetSocketAddress( port ),BACKLOG );
+            } catch ( IOException e ) {
+                System.out.println( "** cannot listen on port "+port+": "+e.getMessage()+" **" );
+                return;
+            }
+            http.createContext( "/path",x -> answer( x,Server::path ) );
+            http.createContext( "/distance",x -> answer( x,Server::distance ) );
+            http.createContext( "/neighbors",x -> answer( x,Server::neighbors ) );
+            http.setExecutor( executor() );
+            http.start();
+            System.out.println( "listening on port "+http.getAddress().getPort() );
         }
 
+        /* EXECUTOR(): a virtual thread per request, when the JVM has them (21 and later), else a cached pool */
+        private static ExecutorService executor() {
 
-        /*-----------------------------------------------------------*/
-        /* methods - Trip
-        /*-----------------------------------------------------------*/
+            try {
+                return( (ExecutorService) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null ) );
+            } catch ( ReflectiveOperationException e ) {
+                return( Executors.newCachedThreadPool() );
+            }
+        }
 
-        /* EXPLORE(): determine if a vertex is reachable from v */
-        public void explore( int v,
-                              Boolean [] visited ) {
+        /* ANSWER(): runs one endpoint and sends its JSON. The length is always known, so the connection is kept alive */
+        private static void answer( HttpExchange x,Endpoint e ) throws IOException {
 
-            visited[v] = true;
-            gNode p = adjListA[v].head;
-            while ( p != null ) {
-                if ( !visited[p.vrtx] ) {
-                    explore( p.vrtx,visited );
+            int code = 200;
+            String body;
+            try ( InputStream in = x.getRequestBody() ) {
+                in.readAllBytes(); // the request must be read to the end to reuse the connection
+                if ( !x.getRequestMethod().equals( "GET" ) ) {
+                    code = 405;
+                    body = error( "only GET is supported" );
+                } else {
+                    body = e.run( query( x.getRequestURI().getRawQuery() ) );
                 }
-                p = p.link;
+            } catch ( IllegalArgumentException ex ) { // a parameter is missing or a name does not exist
+                code = 400;
+                body = error( ex.getMessage() );
+            } catch ( RuntimeException ex ) {
+                code = 500;
+                body = error( String.valueOf( ex ) );
+            }
+            byte [] b = body.getBytes( StandardCharsets.UTF_8 );
+            x.getResponseHeaders().set( "Content-Type","application/json; charset=utf-8" );
+            x.sendResponseHeaders( code,b.length );
+            try ( OutputStream out = x.getResponseBody() ) {
+                out.write( b );
             }
         }
 
-        /* DISTANCE(): searches block in capdist to find distance between 2 countries */
-        public int Distance(String country1, String country2 ) {
+        /* PATH(): {"from", "to", "distance", "legs", "km"}, km of every leg. The distance is -1 and legs is
+           empty if there is no path */
+        private static String path( Map<String,String> q ) {
 
-            int numa = num( country1 );
-            int numb = num( country2 );
-            if ( numa == numb ) {
-                return( 0 );
+            RoutingGraph r = routing;
+            int v0 = country( r,q,"from" );
+            int v1 = country( r,q,"to" );
+            Route route = findRoute( r,v0,v1 ); // one search for the distance and the legs, on r
+            List<String> legs = (route.unreachable ? List.of() : route.legs());
+            StringBuilder y = new StringBuilder();
+            y.append( "{\"from\":" ).append( string( r.countries[v0] ) );
+            y.append( ",\"to\":" ).append( string( r.countries[v1] ) );
+            y.append( ",\"distance\":" ).append( route.distance ).append( ",\"legs\":[" );
+            for ( int j = 0;  j < legs.size();  j++ ) {
+                y.append( (j > 0 ? "," : "") ).append( string( legs.get( j ) ) );
+            }
+            y.append( "],\"km\":[" );
+            for ( int j = 0;  j < route.km.length;  j++ ) {
+                y.append( (j > 0 ? "," : "") ).append( route.km[j] );
             }
+            return( y.append( "]}" ).toString() );
+        }
 
-            int b,m,t;
+        /* DISTANCE(): {"from", "to", "distance", "border"}, the km of the shortest path and of the border
+           between them, -1 if there is none */
+        private static String distance( Map<String,String> q ) {
 
-            // first: find the block where country1 is
-            b = 0;
-            t = 202;
-            while ( b < t ) {
-                m = ((b+t) >> 1);
-                if ( numa <= numaA_Arr[m] ) {
-                    t = m;
-                } else {
-                    b = m+1;
+            RoutingGraph r = routing;
+            int v0 = country( r,q,"from" );
+            int v1 = country( r,q,"to" );
+            return( "{\"from\":"+string( r.countries[v0] )+",\"to\":"+string( r.countries[v1] )+
+                    ",\"distance\":"+getPathDistance( r,v0,v1 )+
+                    ",\"border\":"+r.graph.weight( v0,v1 )+"}" );
+        }
+
+        /* NEIGHBORS(): {"country", "neighbors": [{"name", "km"}]} straight from the graph */
+        private static String neighbors( Map<String,String> q ) {
+
+            RoutingGraph r = routing;
+            int v = country( r,q,"country" );
+            Graph g = r.graph;
+            StringBuilder y = new StringBuilder();
+            y.append( "{\"country\":" ).append( string( r.countries[v] ) ).append( ",\"neighbors\":[" );
+            for ( int e = g.offsets[v];  e < g.offsets[v+1];  e++ ) {
+                y.append( (e > g.offsets[v] ? "," : "") );
+                y.append( "{\"name\":" ).append( string( r.countries[g.targets[e]] ) );
+                y.append( ",\"km\":" ).append( g.weights[e] ).append( "}" );
+            }
+            return( y.append( "]}" ).toString() );
+        }
+
+        /* COUNTRY(): the vertex of the country named by parameter p */
+        private static int country( RoutingGraph r,Map<String,String> q,String p ) {
+
+            String s = q.get( p );
+            if ( s == null ) {
+                throw new IllegalArgumentException( "missing parameter: "+p );
+            }
+            int v = r.index( s );
+            if ( v < 0 ) {
+                throw new IllegalArgumentException( "unknown country: "+s );
+            }
+            return( v );
+        }
+
+        /* QUERY(): the parameters of a query string, decoded */
+        private static Map<String,String> query( String raw ) {
+
+            Map<String,String> y = new HashMap<>();
+            if ( raw != null ) {
+                for ( String kv : raw.split( "&" ) ) {
+                    int i = kv.indexOf( '=' );
+                    if ( i > 0 ) {
+                        y.put( URLDecoder.decode( kv.substring( 0,i ),StandardCharsets.UTF_8 ),
+                               URLDecoder.decode( kv.substring( i+1 ),StandardCharsets.UTF_8 ) );
+                    }
                 }
             }
+            return( y );
+        }
 
-            // determines when blocks start and end. block 64 is flawed, it is double the size of others
-            b = (t <= 64 ? 202*t : 202*t+202);
-            t = (t != 64 ? b+201 : b+403);
+        /* ERROR(): {"error"} */
+        private static String error( String message ) {
+            return( "{\"error\":"+string( message )+"}" );
+        }
 
-            // second: find the line in the block where country2 is
-            while ( b < t ) {
-                m = ((b+t) >> 1);
-                if ( numb <= dist[m][1] ) {
-                    t = m;
+        /* STRING(): s as a JSON string */
+        private static String string( String s ) {
+
+            StringBuilder y = new StringBuilder( s.length()+2 ).append( '"' );
+            for ( int i = 0;  i < s.length();  i++ ) {
+                char c = s.charAt( i );
+                if ( c == '"' || c == '\\' ) {
+                    y.append( '\\' ).append( c );
+                } else if ( c < ' ' ) {
+                    y.append( String.format( "\\u%04x",(int) c ) );
                 } else {
-                    b = m+1;
+                    y.append( c );
                 }
             }
-            return( (dist[t][1] == numb ? dist[t][2] : -1) );
+            return( y.append( '"' ).toString() );
         }
 
-        /* FINDMINPATHS(): implements Dijkstra's algorithm to find the shortest path between two vertices */
-        public int [][] findMinPaths( int s ) {
+        private interface Endpoint { // one of path(), distance() and neighbors()
+            String run( Map<String,String> q );
+        }
+    }
 
-            // dist[v] is the distance from s, starting vertex, to a vertex v
-            Integer [] dist = new Integer [NumCountries];
-            Integer [] prev = new Integer [NumCountries];
-            Queue queue = new Queue();
-            for ( int v = 0;  v < NumCountries;  v++ ) {
-                // initializing
-                dist[v] = Integer.MAX_VALUE;	// infinity
-                prev[v] = -1;
-            }
-            dist[s] = 0; // every vertex is 0 km from itself, front of the queue
-            for ( int v = 0;  v < NumCountries;  v++ ) {
-                queue.add( new qNode( v,dist[v] ) );
-            }
-            while ( queue.isNotDone() ) {
-                int u = queue.deleteMin();
-                // search through every vertex v which is adjacent to u
-                for ( gNode p = adjListA[u].Head();  p != null;  p = p.link ) {
-                    int v = p.vrtx;
-                    int newDist = dist[u]+p.wght;
-                    if ( newDist < dist[v] ) {
-                        dist[v] = newDist;
-                        prev[v] = u;
-                        queue.decrease( v,newDist );
+    private static class Snapshot { // versioned, checksummed binary copy of the loaded data
+
+        /*-----------------------------------------------------------*/
+        /* data members: Snapshot
+        /*-----------------------------------------------------------*/
+
+        private static final int MAGIC = 0x49525453; // "IRTS"
+        private static final int VERSION = 4;
+
+        /*-----------------------------------------------------------*/
+        /* methods: Snapshot
+        /*
+        /* layout: magic, version, number of input files, length and
+        /* last modified time of each, payload length, payload, CRC32 of
+        /* the payload. The payload has countries[], stateNums[][],
+        /* stateOrd[], capd (a 0 and the matrix, or a 1 and the rows of
+        /* pairs), the graph, then a 1 and the hub
+        /* labels if they were built (else a 0).
+        /*-----------------------------------------------------------*/
+
+        /* SAVE(): writes the loaded data of r to snap, through a temp file so readers never see half of it */
+        private static void save( RoutingGraph r,File snap,List<File> inputs ) {
+
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream p = new DataOutputStream( bytes );
+                p.writeInt( r.countries.length );
+                for ( String s : r.countries ) {
+                    putString( p,s );
+                }
+                p.writeInt( r.stateNums.length );
+                for ( String [] s : r.stateNums ) {
+                    putString( p,s[0] );
+                    putString( p,s[1] );
+                    putString( p,s[2] );
+                }
+                CapDist d = r.capd;
+                p.writeInt( d.ords );
+                putInts( p,r.stateOrd );
+                p.writeInt( (d.full != null ? 0 : 1) );
+                if ( d.full != null ) {
+                    putChars( p,d.full );
+                } else {
+                    putInts( p,d.start );
+                    putInts( p,d.col );
+                    putChars( p,d.km );
+                }
+                putInts( p,r.graph.offsets );
+                putInts( p,r.graph.targets );
+                putInts( p,r.graph.weights );
+                Hubs l = r.hubs;
+                p.writeInt( (l == null ? 0 : 1) );
+                if ( l != null ) {
+                    putInts( p,l.order );
+                    putInts( p,l.start );
+                    putInts( p,l.hub );
+                    putInts( p,l.km );
+                    putInts( p,l.next );
+                }
+                p.flush();
+                byte [] payload = bytes.toByteArray();
+                CRC32 crc = new CRC32();
+                crc.update( payload );
+
+                File tmp = new File( snap.getPath()+".tmp" );
+                try ( DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream( new FileOutputStream( tmp ) ) ) ) {
+                    out.writeInt( MAGIC );
+                    out.writeInt( VERSION );
+                    out.writeInt( inputs.size() );
+                    for ( File f : inputs ) {
+                        out.writeLong( f.length() );
+                        out.writeLong( f.lastModified() );
                     }
+                    out.writeInt( payload.length );
+                    out.write( payload );
+                    out.writeLong( crc.getValue() );
                 }
+                Files.move( tmp.toPath(),snap.toPath(),StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE );
+            } catch( IOException e ) {
+                System.out.println( "** snapshot: could not write "+snap+" **" );
             }
-            int [][] minPath = new int [NumCountries][NumCountries];
-            for ( int v = 0;  v < NumCountries;  v++ ) {
-                minPath[v][0] = dist[v];
-                minPath[v][1] = prev[v];
-            }
-            // array with minimum path is returned
-            return( minPath );
         }
 
-        /* PATH(): calls findMinPaths to find the minimum path between two countries */
-        public List<String> path( String country1,String country2 ) {
+        /* LOAD(): maps snap and makes a RoutingGraph of it, null if it is missing, stale or damaged */
+        private static RoutingGraph load( File snap,List<File> inputs,List<String []> aliases ) {
 
-            List<String> y = new ArrayList<>();
-            int v0 = index( country1 );
-            int v1 = index( country2 );
-            if (v0 < 0 || v1 < 0 ){
-                y.add("") ;
-                return(y) ;
+            if ( !snap.exists() ) {
+                return( null );
             }
-            if ( noPath( v0,v1,adjListA ) ) {
-                y.add( "" );
-                return( y );
+            try ( FileChannel ch = FileChannel.open( snap.toPath(),StandardOpenOption.READ ) ) {
+                MappedByteBuffer buf = ch.map( FileChannel.MapMode.READ_ONLY,0,ch.size() );
+                if ( buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getInt() != inputs.size() ) {
+                    return( null );
+                }
+                for ( File f : inputs ) { // stale if any input file changed since
+                    if ( buf.getLong() != f.length() || buf.getLong() != f.lastModified() ) {
+                        return( null );
+                    }
+                }
+                int len = buf.getInt();
+                ByteBuffer p = buf.slice( buf.position(),len );
+                CRC32 crc = new CRC32();
+                crc.update( p.duplicate() );
+                if ( crc.getValue() != buf.getLong( buf.position()+len ) ) {
+                    return( null );
+                }
+
+                // everything is read into locals first, nothing changes unless the whole payload is good
+                String [] c = new String [p.getInt()];
+                for ( int i = 0;  i < c.length;  i++ ) {
+                    c[i] = getString( p );
+                }
+                String [][] s = new String [p.getInt()][3];
+                for ( String [] r : s ) {
+                    r[0] = getString( p );
+                    r[1] = getString( p );
+                    r[2] = getString( p );
+                }
+                int n = p.getInt();
+                int [] ord = getInts( p );
+                CapDist d = (p.getInt() == 0 ? new CapDist( n,getChars( p ) ) :
+                        new CapDist( n,getInts( p ),getInts( p ),getChars( p ) ));
+                Graph g = new Graph( getInts( p ),getInts( p ),getInts( p ) );
+                Hubs l = (p.getInt() == 0 ? null :
+                        new Hubs( getInts( p ),getInts( p ),getInts( p ),getInts( p ),getInts( p ) ));
+                boolean fits = (d.full != null ? d.full.length == (long) n*n :
+                        d.start.length == n+1 && d.start[n] == d.col.length && d.col.length == d.km.length);
+                if ( c.length != g.n || !fits ) { // the sizes come from the payload itself
+                    return( null );
+                }
+
+                return( new RoutingGraph( c,s,d,ord,aliases ).with( g,l ) );
+            } catch( IOException | RuntimeException e ) {
+                return( null );
             }
-            int [][] minPath = findMinPaths( v0 );
-            int l = 0;
-            int [] path = new int [country.length];
-            path[0] = v1;
-            int i = v1;
-            do { // unwinding the previous array from findMinPaths to retrieve actual path
-                i = minPath[i][1];
-                path[++l] = i;
-            } while ( i != v0 );
-            for ( int j = l;  1 <= j;  --j ) {
-                String c0 = country[path[j]];
-                String c1 = country[path[j-1]];
-                int d = Distance( c0,c1 );
-                // creating array of output
-                String t = c0 + " --> "+c1+" ("+d+" km.)";
-                y.add( t );
+        }
+
+        /* PUTSTRING() / GETSTRING(): a string is its UTF-8 length, then its UTF-8 bytes */
+        private static void putString( DataOutputStream p,String s ) throws IOException {
+            byte [] b = s.getBytes( StandardCharsets.UTF_8 );
+            p.writeInt( b.length );
+            p.write( b );
+        }
+
+        private static String getString( ByteBuffer p ) {
+            byte [] b = new byte [p.getInt()];
+            p.get( b );
+            return( new String( b,StandardCharsets.UTF_8 ) );
+        }
+
+        /* PUTINTS() / GETINTS(): an int array is its length, then its values */
+        private static void putInts( DataOutputStream p,int [] a ) throws IOException {
+            p.writeInt( a.length );
+            for ( int x : a ) {
+                p.writeInt( x );
             }
-            return( y );
         }
 
-        /* NOPATH(): checks to see if there is a path between two vertices */
-        private Boolean noPath( int v0,int v1,AdjList [] adjListA ) {
+        private static int [] getInts( ByteBuffer p ) {
+            int [] a = new int [p.getInt()];
+            p.asIntBuffer().get( a );
+            p.position( p.position()+4*a.length );
+            return( a );
+        }
 
-            int n = adjListA.length;
-            Boolean [] visited = new Boolean [n];
-            Arrays.fill(visited, false);
-            explore( v0,visited );
-            return( (!visited[v1]) );
+        /* PUTCHARS() / GETCHARS(): the same for chars */
+        private static void putChars( DataOutputStream p,char [] a ) throws IOException {
+            p.writeInt( a.length );
+            for ( char x : a ) {
+                p.writeChar( x );
+            }
         }
 
+        private static char [] getChars( ByteBuffer p ) {
+            char [] a = new char [p.getInt()];
+            p.asCharBuffer().get( a );
+            p.position( p.position()+2*a.length );
+            return( a );
+        }
     }
 
-    /* DOFILE0: processes borders.txt file and fills in country[] */
-    private static void doFile0( Scanner sc,String [] line,String [] countries ) {
+    /* DOFILE0: processes borders.txt file and fills in country[] and line0[], as long as the file is */
+    private static void doFile0( Scanner sc ) {
 
         // edited border.txt
         String [] newFile = {
@@ -933,21 +3671,35 @@ public class IRoadTrip {
                 "Zambia = Angola 1,065 km; Botswana 0.15 km; Congo, Democratic Republic of the 2,332 km; Malawi 847 km; Mozambique 439 km; Namibia 244 km; Tanzania 353 km; Zimbabwe 763 km",
                 "Zimbabwe = Botswana 834 km; Mozambique 1,402 km; South Africa 230 km; Zambia 763 km"};
 
+        // a line is only replaced by the edited line of the same country, any other line is used as it is
+        Map<String,String> edited = new HashMap<>();
+        for ( String e : newFile ) {
+            edited.put( e.substring( 0,e.indexOf( '=' )-1 ),e );
+        }
+        String [] line = new String [256];
+        String [] names = new String [256];
         String s;
         int n = 0;
         while ( sc.hasNextLine() ) {
             s = sc.nextLine();
-            if ( !s.equals( newFile[n] ) ) {
-                s = newFile[n];
+            if ( s.indexOf( '=' ) < 1 ) { // blank line
+                continue;
+            }
+            String name = s.substring( 0,s.indexOf( '=' )-1 ); // left of the = sign
+            s = edited.getOrDefault( name,s );
+            if ( n == line.length ) { // grow
+                line = Arrays.copyOf( line,2*n );
+                names = Arrays.copyOf( names,2*n );
             }
             line[n] = s; // s is the string, and line is the actual line used
-            countries[n++] = s.substring( 0,
-                    s.indexOf( '=' )-1 ); // n = the number of countries, left of the = sign
+            names[n++] = name; // n = the number of countries
         }
         sc.close();
+        line0 = Arrays.copyOf( line,n );
+        countries = Arrays.copyOf( names,n );
     }
 
-    /* DOFILE1: processes state_name.tsv and fills in stateNums[][] */
+    /* DOFILE1: processes state_name.tsv and fills in stateNums[][], as long as the file is */
     private static void doFile1( Scanner sc ) {
 
         // edited state_name.tsv
@@ -1024,8 +3776,8 @@ public class IRoadTrip {
                 "341	MNG	Montenegro	2006-06-03	2020-12-31",
                 "343	MAC	Macedonia (Former Yugoslav Republic of)	1991-11-20	2020-12-31",
                 "344	CRO	Croatia	1992-04-27	2020-12-31",
-                "340	SER	Serbia	1878-07-13	1915-10-01",
-                "340	SER	Serbia	2006-06-05	2020-12-31",
+                "345	SER	Serbia	1878-07-13	1915-10-01",
+                "345	SER	Serbia	2006-06-05	2020-12-31",
                 "345	YUG	Yugoslavia	1918-12-01	2006-06-04",
                 "346	BOS	Bosnia and Herzegovina	1992-04-27	2020-12-31",
                 "347	KOS	Kosovo	2008-02-17	2020-12-31",
@@ -1170,99 +3922,202 @@ public class IRoadTrip {
                 "940	SOL	Solomon Islands	1978-07-07	2020-12-31",
                 "950	FJI	Fiji	1970-10-10	2020-12-31"};
 
+        // a line is only replaced by the edited line of the same state id and start date, any other line is
+        // used as it is. newFile[0] is the first line
+        Map<String,String> edited = new HashMap<>();
+        for ( int i = 1;  i < newFile.length;  i++ ) {
+            edited.put( editKey( newFile[i] ),newFile[i] );
+        }
+        String [][] rows = new String [256][];
         String s;
         s = sc.nextLine();		// skip first line, it is the name of the categories
         int n = 0;
         while ( sc.hasNextLine() ) {
             s = sc.nextLine();
-            if ( !s.equals( newFile[n] ) ) {
-                s = newFile[n];
+            if ( s.split( "\t",-1 ).length < 4 ) { // blank line
+                continue;
             }
-            IRoadTrip.stateNums[n][0] = getname1( s ); // col0: country name
+            s = edited.getOrDefault( editKey( s ),s );
+            if ( n == rows.length ) { // grow
+                rows = Arrays.copyOf( rows,2*n );
+            }
+            rows[n] = new String [3];
+            rows[n][0] = getname1( s ); // col0: country name
+            rows[n][2] = s.substring( s.indexOf( '\t' )+1,
+                    s.indexOf( '\t',s.indexOf( '\t' )+1 ) ); // col2: state id
             // increment n here
-            IRoadTrip.stateNums[n++][1] = s.substring( 0,s.indexOf( '\t' ) ); // col1: state number
+            rows[n++][1] = s.substring( 0,s.indexOf( '\t' ) ); // col1: state number
         }
         sc.close();
+        stateNums = Arrays.copyOf( rows,n );
     }
 
-    /* DOFILE2: processes capdist.csv by making a temp file and moving blocks around. Completes distances[][] */
-    private static void doFile2( Scanner sc,
-                                   int [] numA_Arr,int [][] distances ) {
+    /* EDITKEY(): state id and start date of a line of state_name.tsv, what an edited line has to match */
+    private static String editKey( String s ) {
 
-        try {
-            FileWriter f = new FileWriter( "newcapd.csv" );
-            // moved blocks for more order
-            writef( sc,f,3031, 202 );
-            writef( sc,f,8888, 606 );
-            writef( sc,f,23028, 202 );
-            while ( sc.hasNextLine() ) {
-                f.write( sc.nextLine()+"\n" );
-            }
-            f.close();
-            File fin = new File( "newcapd.csv" );
-            Scanner sc2 = new Scanner( fin );
-            String s;
-            s = sc2.nextLine();		// skip first line
-            // intializing
-            int index = 0;
-            int n1 = 0; // number of lines
-            int n2 = 0;
-            while ( sc2.hasNextLine() ) {
-                s = sc2.nextLine();
-                int j = s.indexOf( ',' );
-                int a = Integer.parseInt( s.substring( 0,j ) );
-                distances[n2][0] = a;
-                if ( index < a ) {
-                    index = a;
-                    numA_Arr[n1++] = a; // start of block
-                }
-                s = s.substring( j+1 );
-                j = s.indexOf( ',' );
-                s = s.substring( j+1 );
-                j = s.indexOf( ',' );
-                distances[n2][1] = Integer.parseInt( s.
-                        substring( 0,j ) );
-                s = s.substring( j+1 );
-                j = s.indexOf( ',' );
-                s = s.substring( j+1 );
-                j = s.indexOf( ',' );
-                distances[n2++][2] = Integer.parseInt( s.
-                        substring( 0,j ) );
-            }
-            sc2.close();
-            fin.delete();
-
-        } catch( Exception e ) {
-            System.out.println( "doFile2: ** I/O exception **" );
-            System.exit(0 );
-        }
-    }
-
-    /* WRITEF(): writes corrected capdist.csv information into temp file */
-    private static void writef(Scanner sc, FileWriter f,
-                               int n1, int n3 ) {
+        String [] f = s.split( "\t",-1 );
+        return( f[1]+"\t"+f[3] );
+    }
 
-        try {
-            FileWriter t = new FileWriter( "temptemp" );
-            for ( int i = 0;  i < n1;  i++ ) {
-                f.write( sc.nextLine()+"\n" );
+    /* DOFILE2: processes capdist.csv from a memory mapped buffer, one block per task. Completes capd */
+    private static void doFile2( File capdist ) throws IOException {
+
+        try ( FileChannel ch = FileChannel.open( capdist.toPath(),StandardOpenOption.READ ) ) {
+            MappedByteBuffer buf = ch.map( FileChannel.MapMode.READ_ONLY,0,ch.size() );
+
+            // first: find where each block starts, every numa and numb gets its ordinal here
+            long t0 = begin();
+            stateOrd = new int [0]; // ordinals of an earlier load are forgotten
+            numOrd = 0;
+            numPairs = 0;
+            int [] start = blocks( buf );
+            stage( "capdist blocks",t0 );
+
+            // second: the blocks are parsed in parallel, each one only writes its own row
+            t0 = begin();
+            int blocks = start.length-1;
+            if ( CapDist.full( numOrd,numPairs ) ) { // every state in the file is a row and a column
+                char [] km = new char [numOrd*numOrd]; // full() made sure it fits
+                Arrays.fill( km,NoKm );
+                IntStream.range( 0,blocks ).parallel().forEach( k ->
+                        doBlock( buf.slice( start[k],start[k+1]-start[k] ),km ) );
+                capd = new CapDist( numOrd,km );
+            } else { // most pairs are not in the file, every block becomes its pairs
+                int [] row = new int [blocks];
+                long [][] pairs = new long [blocks][];
+                IntStream.range( 0,blocks ).parallel().forEach( k -> {
+                    ByteBuffer b = buf.slice( start[k],start[k+1]-start[k] );
+                    row[k] = stateOrd[parseInt( b.duplicate() )];
+                    pairs[k] = doPairs( b );
+                } );
+                capd = CapDist.rows( numOrd,row,pairs );
+            }
+            stage( "capdist parse",t0 );
+        }
+    }
+
+    /* BLOCKS(): byte offsets in capdist.csv where numa changes, the last entry is the end of the file.
+       Every state number in the file gets its ordinal and every line is counted, so the size of capd is known
+       before parsing */
+    private static int [] blocks( ByteBuffer buf ) {
+
+        int [] start = new int [16];
+        int n = 0;
+        int numa = -1;
+        skip( buf,'\n' );		// skip first line, it is the name of the categories
+        while ( buf.hasRemaining() ) {
+            int p = buf.position();
+            if ( Character.isDigit( buf.get( p ) ) ) {
+                int a = parseInt( buf );
+                if ( a != numa ) { // start of block
+                    if ( n == start.length ) {
+                        start = Arrays.copyOf( start,2*n );
+                    }
+                    start[n++] = p;
+                    numa = a;
+                    ord( a );
+                }
+                skip( buf,',' ); // ida
+                ord( parseInt( buf ) );
+                numPairs++;
             }
-            for (int i = 0; i < block; i++ ) {
-                t.write( sc.nextLine()+"\n" );
+            skip( buf,'\n' );
+        }
+        start = Arrays.copyOf( start,n+1 );
+        start[n] = buf.position();
+        return( start );
+    }
+
+    /* DOBLOCK(): parses the lines of one block of capdist.csv into a full matrix of km */
+    private static void doBlock( ByteBuffer buf,char [] km ) {
+
+        while ( buf.hasRemaining() ) {
+            if ( !Character.isDigit( buf.get( buf.position() ) ) ) { // blank line
+                skip( buf,'\n' );
+                continue;
             }
-            t.close();
-            for ( int i = 0;  i < n3;  i++ ) {
-                f.write( sc.nextLine()+"\n" );
+            // numa,ida,numb,idb,kmdist,midist
+            int a = stateOrd[parseInt( buf )];
+            skip( buf,',' );
+            int b = stateOrd[parseInt( buf )]; // blocks() gave every numb its ordinal
+            skip( buf,',' );
+            km[(int) ((long) a*numOrd+b)] = (char) parseInt( buf );
+            skip( buf,'\n' );
+        }
+    }
+
+    /* DOPAIRS(): parses the lines of one block of capdist.csv into (ord(numb) << 16 | km), for CapDist.rows() */
+    private static long [] doPairs( ByteBuffer buf ) {
+
+        long [] y = new long [16];
+        int n = 0;
+        while ( buf.hasRemaining() ) {
+            if ( !Character.isDigit( buf.get( buf.position() ) ) ) { // blank line
+                skip( buf,'\n' );
+                continue;
             }
-            File fin = new File( "temptemp" );
-            Scanner sct = new Scanner( fin );
-            while ( sct.hasNextLine() ) {
-                f.write( sct.nextLine()+"\n" );
+            skip( buf,',' ); // numa, the same for the whole block
+            skip( buf,',' ); // ida
+            int b = stateOrd[parseInt( buf )];
+            skip( buf,',' );
+            if ( n == y.length ) {
+                y = Arrays.copyOf( y,2*n );
             }
-            fin.delete();
-        } catch( Exception e ) {
-            System.out.println( "** writef: I/O exception **" );
-            System.exit( 0 );
+            y[n++] = ((long) b << 16) | (char) parseInt( buf ); // km as a char, like in the matrix
+            skip( buf,'\n' );
+        }
+        return( Arrays.copyOf( y,n ) );
+    }
+
+    /* PARSEINT(): reads a number in place, up to and including the ',' after it */
+    private static int parseInt( ByteBuffer buf ) {
+
+        int x = 0;
+        for ( byte c = buf.get();  c != ',';  c = buf.get() ) {
+            x = 10*x+(c-'0');
+        }
+        return( x );
+    }
+
+    /* SKIP(): moves past the next c, or to the end of the buffer */
+    private static void skip( ByteBuffer buf,char c ) {
+
+        while ( buf.hasRemaining() && buf.get() != c ) {
+            ;
+        }
+    }
+
+    /* STAGE(): records how long a load stage took, since t0 */
+    private static void stage( String name,long t0 ) {
+
+        loadTimes.put( name,System.nanoTime()-t0 );
+        LoadEvent e = loadEvent;
+        if ( e != null && e.shouldCommit() ) {
+            e.stage = name;
+            e.commit();
+        }
+        loadEvent = null;
+    }
+
+    /* BEGIN(): the start of a load stage, for stage(). Also starts its flight recorder event */
+    private static long begin() {
+
+        loadEvent = new LoadEvent();
+        loadEvent.begin();
+        return( System.nanoTime() );
+    }
+
+    /* ORD(): dense ordinal of a state number in capd, a new one is handed out the first time */
+    private static int ord( int num ) {
+
+        if ( num >= stateOrd.length ) { // grow, new entries have no ordinal yet
+            int n = stateOrd.length;
+            stateOrd = Arrays.copyOf( stateOrd,Math.max( num+1,2*n ) );
+            Arrays.fill( stateOrd,n,stateOrd.length,-1 );
         }
-    } // end of class Trip
+        if ( stateOrd[num] < 0 ) {
+            stateOrd[num] = numOrd++;
+        }
+        return( stateOrd[num] );
+    }
 } // end of class IRoadTrip
\ No newline at end of file
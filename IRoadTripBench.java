@@ -0,0 +1,303 @@
+/* ------------------------------------------------------------------------ */
+/* IROADTRIPBENCH.JAVA: benchmarks for IRoadTrip. Times loading the three   */
+/* files (stage by stage), getDistance() and findPath() on fixed sets of    */
+/* country pairs, and a mix of all 253x253 pairs for every search. Run it   */
+/* with the same three files as IRoadTrip. bench_baseline.txt in the repo   */
+/* is the output of a run, to compare against.                              */
+/* ------------------------------------------------------------------------ */
+
+import java.util.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+
+public class IRoadTripBench {
+    /*-------------------------------------------------------------------*/
+    /* global variables
+    /*-------------------------------------------------------------------*/
+    static int warmup = 5;          // iterations run before measuring
+    static int iterations = 10;     // iterations measured
+    static long iterationMs = 200;  // length of one iteration of a query benchmark
+    static int loads = 10;          // measured loads, after warmup loads
+    static volatile long sink;      // every result ends up here, so the JIT can not drop the work
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean(); // allocated bytes per thread
+    private static PrintStream out = System.out;
+
+    public static void main(String[] args) throws IOException {
+        if ( args.length < 3 ) {
+            System.out.println( "** please attach: borders.txt, state_name.tsv, capdist.csv **" );
+            System.exit( 0 );
+        }
+        String [] files = { args[0],args[1],args[2] };
+        String only = null; // -only: benchmarks whose name starts with this
+        for ( int i = 3;  i+1 < args.length;  i++ ) {
+            if ( args[i].equals( "-warmup" ) ) {
+                warmup = Integer.parseInt( args[++i] );
+            } else if ( args[i].equals( "-iterations" ) ) {
+                iterations = Integer.parseInt( args[++i] );
+            } else if ( args[i].equals( "-time" ) ) {
+                iterationMs = Long.parseLong( args[++i] );
+            } else if ( args[i].equals( "-loads" ) ) {
+                loads = Integer.parseInt( args[++i] );
+            } else if ( args[i].equals( "-only" ) ) {
+                only = args[++i];
+            } else if ( args[i].equals( "-o" ) ) { // results to a file as well
+                out = new PrintStream( new TeeStream( System.out,new FileOutputStream( args[++i] ) ),true );
+            } else {
+                System.out.println( "** unknown option: "+args[i]+" **" );
+            }
+        }
+        threads.setThreadAllocatedMemoryEnabled( true );
+        out.printf( "# java %s, %d cores, %d+%d iterations of %d ms, %d loads%n",
+                System.getProperty( "java.version" ),Runtime.getRuntime().availableProcessors(),
+                warmup,iterations,iterationMs,loads );
+        out.printf( "%-32s %12s %10s %12s %10s%n","benchmark","ns/op","+-","B/op","MB/s" );
+
+        if ( only == null || "load".startsWith( only ) || only.startsWith( "load" ) ) {
+            load( files );
+        } else {
+            new IRoadTrip( files );
+        }
+        Pairs p = new Pairs();
+        out.printf( "# pairs: %d neighbors, %d not neighbors, %d short, %d long, %d unreachable, %d mix%n",
+                p.neighbors.length,p.others.length,p.short_.length,p.long_.length,p.unreachable.length,
+                p.mix.length );
+
+        List<Object []> runs = new ArrayList<>( List.of(
+                new Object [] { "getDistance neighbors",p.neighbors,(Op) IRoadTrip::getDistance },
+                new Object [] { "getDistance not neighbors",p.others,(Op) IRoadTrip::getDistance },
+                new Object [] { "findPath short",p.short_,(Op) IRoadTripBench::findPath },
+                new Object [] { "findPath long",p.long_,(Op) IRoadTripBench::findPath },
+                new Object [] { "findPath unreachable",p.unreachable,(Op) IRoadTripBench::findPath } ) );
+        for ( Object [] r : runs ) {
+            if ( only == null || ((String) r[0]).startsWith( only ) ) {
+                bench( (String) r[0],(String [][]) r[1],(Op) r[2] );
+            }
+        }
+
+        // the mix, once for every way of searching. The table of precompute() wins over all of them, so it is last
+        String [] searches = { "dijkstra","dijkstra no cache","bidi","astar","ch","hub","precompute" };
+        for ( String s : searches ) {
+            String name = "findPath mix "+s;
+            if ( only != null && !name.startsWith( only ) ) {
+                continue;
+            }
+            IRoadTrip.RoutingGraph g = IRoadTrip.getRouting();
+            IRoadTrip.setSearch( (s.equals( "bidi" ) ? IRoadTrip.BIDI : s.equals( "astar" ) ? IRoadTrip.ASTAR :
+                                  s.equals( "ch" ) ? IRoadTrip.CH : s.equals( "hub" ) ? IRoadTrip.HUB : IRoadTrip.DIJKSTRA) );
+            if ( s.equals( "dijkstra no cache" ) ) {
+                IRoadTrip.setRouting( g.with( (IRoadTrip.TreeCache) null ) );
+            } else if ( s.equals( "ch" ) ) {
+                IRoadTrip.contract();
+            } else if ( s.equals( "hub" ) ) {
+                IRoadTrip.label();
+            } else if ( s.equals( "precompute" ) ) {
+                IRoadTrip.precompute();
+            }
+            bench( name,p.mix,IRoadTripBench::findPath );
+            IRoadTrip.setRouting( g );
+        }
+        IRoadTrip.setSearch( IRoadTrip.DIJKSTRA );
+        out.flush();
+    }
+
+    /* LOAD(): times the constructor, and every stage of it from the loadTimes() of the RoutingGraph */
+    private static void load( String [] files ) {
+
+        for ( int i = 0;  i < warmup;  i++ ) {
+            new IRoadTrip( files );
+        }
+        Map<String,double []> stages = new LinkedHashMap<>(); // stage -> ms of every load
+        double [] total = new double [loads];
+        long bytes = 0;
+        for ( int i = 0;  i < loads;  i++ ) {
+            long b0 = allocatedAll();
+            long t0 = System.nanoTime();
+            new IRoadTrip( files );
+            total[i] = (System.nanoTime()-t0)/1e6;
+            bytes += allocatedAll()-b0;
+            for ( Map.Entry<String,Long> e : IRoadTrip.getRouting().loadTimes().entrySet() ) {
+                stages.computeIfAbsent( e.getKey(),k -> new double [loads] )[i] = e.getValue()/1e6;
+            }
+        }
+        out.printf( "%-32s %12.0f %10.0f %12d %10.1f%n","load",mean( total )*1e6,sd( total )*1e6,
+                bytes/loads,bytes/1e6/(sum( total )/1e3) );
+        for ( Map.Entry<String,double []> e : stages.entrySet() ) { // allocation is only known for the whole load
+            out.printf( "%-32s %12.0f %10.0f%n","load "+e.getKey(),mean( e.getValue() )*1e6,sd( e.getValue() )*1e6 );
+        }
+    }
+
+    /* BENCH(): runs op over the pairs, again and again, for warmup+iterations iterations of iterationMs.
+       Prints the mean time per call, its standard deviation over the iterations, and the bytes allocated */
+    private static void bench( String name,String [][] pairs,Op op ) {
+
+        if ( pairs.length == 0 ) {
+            out.printf( "%-32s %12s%n",name,"no pairs" );
+            return;
+        }
+        double [] ns = new double [iterations];
+        long calls = 0;
+        long bytes = 0;
+        long nanos = 0;
+        for ( int it = 0;  it < warmup+iterations;  it++ ) {
+            long n = 0;
+            long h = 0;
+            long b0 = allocated();
+            long t0 = System.nanoTime();
+            long end = t0+iterationMs*1_000_000L;
+            long t1;
+            do {
+                for ( String [] p : pairs ) {
+                    h += op.run( p[0],p[1] );
+                }
+                n += pairs.length;
+                t1 = System.nanoTime();
+            } while ( t1 < end );
+            long b1 = allocated();
+            sink += h;
+            if ( it >= warmup ) {
+                ns[it-warmup] = (double) (t1-t0)/n;
+                calls += n;
+                bytes += b1-b0;
+                nanos += t1-t0;
+            }
+        }
+        out.printf( "%-32s %12.1f %10.1f %12.1f %10.1f%n",name,mean( ns ),sd( ns ),(double) bytes/calls,
+                bytes/1e6/(nanos/1e9) );
+    }
+
+    /* FINDPATH(): findPath() as an Op, the result is the number of legs */
+    private static int findPath( String c0,String c1 ) {
+        return( IRoadTrip.findPath( c0,c1 ).size() );
+    }
+
+    /* ALLOCATED(): bytes allocated so far by this thread */
+    private static long allocated() {
+        return( threads.getThreadAllocatedBytes( Thread.currentThread().getId() ) );
+    }
+
+    /* ALLOCATEDALL(): bytes allocated so far by all live threads, loading uses the fork-join pool too */
+    private static long allocatedAll() {
+
+        long b = 0;
+        for ( long x : threads.getThreadAllocatedBytes( threads.getAllThreadIds() ) ) {
+            b += Math.max( x,0 ); // -1 for a thread that ended in between
+        }
+        return( b );
+    }
+
+    /* MEAN() / SD() / SUM(): of the measured iterations */
+    private static double mean( double [] x ) {
+        return( sum( x )/x.length );
+    }
+
+    private static double sd( double [] x ) {
+
+        double m = mean( x );
+        double s = 0;
+        for ( double v : x ) {
+            s += (v-m)*(v-m);
+        }
+        return( (x.length < 2 ? 0 : Math.sqrt( s/(x.length-1) )) );
+    }
+
+    private static double sum( double [] x ) {
+
+        double s = 0;
+        for ( double v : x ) {
+            s += v;
+        }
+        return( s );
+    }
+
+    private interface Op { // a query on two countries, returns something to sink
+        int run( String c0,String c1 );
+    }
+
+    private static class Pairs { // the country pairs of every benchmark, the same on every run
+
+        /*-----------------------------------------------------------*/
+        /* data members: Pairs
+        /*-----------------------------------------------------------*/
+
+        final String [][] neighbors;    // pairs that share a border
+        final String [][] others;       // different countries that do not
+        final String [][] short_;       // paths of 1 or 2 legs
+        final String [][] long_;        // the longest paths, by number of legs
+        final String [][] unreachable;  // no path at all
+        final String [][] mix;          // all pairs of different countries, shuffled
+
+        /*-----------------------------------------------------------*/
+        /* constructor: Pairs
+        /*-----------------------------------------------------------*/
+
+        Pairs() {
+
+            List<String> c = IRoadTrip.getRouting().countries();
+            List<String []> nb = new ArrayList<>(), ot = new ArrayList<>(), sh = new ArrayList<>();
+            List<String []> un = new ArrayList<>(), all = new ArrayList<>();
+            List<Object []> legs = new ArrayList<>(); // pair, number of legs
+            for ( String c0 : c ) {
+                for ( String c1 : c ) {
+                    if ( c0.equals( c1 ) ) {
+                        continue;
+                    }
+                    String [] p = { c0,c1 };
+                    all.add( p );
+                    (IRoadTrip.getDistance( c0,c1 ) >= 0 ? nb : ot).add( p );
+                    int d = IRoadTrip.getPathDistance( c0,c1 );
+                    if ( d < 0 ) {
+                        un.add( p );
+                        continue;
+                    }
+                    int n = IRoadTrip.findPath( c0,c1 ).size();
+                    if ( n <= 2 ) {
+                        sh.add( p );
+                    }
+                    legs.add( new Object [] { p,n } );
+                }
+            }
+            legs.sort( (a,b) -> (Integer) b[1]-(Integer) a[1] ); // stable, so ties stay in name order
+            List<String []> lo = new ArrayList<>();
+            for ( int i = 0;  i < Math.min( 200,legs.size() );  i++ ) {
+                lo.add( (String []) legs.get( i )[0] );
+            }
+            Collections.shuffle( all,new Random( 253 ) );
+
+            neighbors = nb.toArray( new String [0][] );
+            others = ot.toArray( new String [0][] );
+            short_ = sh.toArray( new String [0][] );
+            long_ = lo.toArray( new String [0][] );
+            unreachable = un.toArray( new String [0][] );
+            mix = all.toArray( new String [0][] );
+        }
+    }
+
+    private static class TeeStream extends OutputStream { // writes to two streams, for -o
+
+        private final OutputStream a, b;
+
+        TeeStream( OutputStream a,OutputStream b ) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public void write( int c ) throws IOException {
+            a.write( c );
+            b.write( c );
+        }
+
+        @Override
+        public void write( byte [] x,int off,int len ) throws IOException {
+            a.write( x,off,len );
+            b.write( x,off,len );
+        }
+
+        @Override
+        public void flush() throws IOException {
+            a.flush();
+            b.flush();
+        }
+    }
+} // end of class IRoadTripBench
\ No newline at end of file
@@ -0,0 +1,152 @@
+/* ------------------------------------------------------------------------ */
+/* IROADTRIPCHECK.JAVA: checks every search of IRoadTrip against Dijkstra's */
+/* on all pairs of countries (253x253 on the bundled files). Every route    */
+/* must have the same total, no country twice, no more legs than Dijkstra's */
+/* and legs that are borders of the Graph with their km. Routes with other  */
+/* legs of the same total and number (like through the other Congo) are    */
+/* counted and shown. A* is checked again after some borders are made      */
+/* shorter than capdist.csv says. Run it with the same three files as       */
+/* IRoadTrip. The exit code is 1 if any check fails.                        */
+/* ------------------------------------------------------------------------ */
+
+import java.util.*;
+
+public class IRoadTripCheck {
+    /*-------------------------------------------------------------------*/
+    /* global variables
+    /*-------------------------------------------------------------------*/
+    static String [] searches = { "bidi","astar","ch","hub","precompute" };
+    static int show = 5; // failures and other legs shown per search
+
+    public static void main(String[] args) {
+        if ( args.length < 3 ) {
+            System.out.println( "** please attach: borders.txt, state_name.tsv, capdist.csv **" );
+            System.exit( 0 );
+        }
+        for ( int i = 3;  i+1 < args.length;  i++ ) {
+            if ( args[i].equals( "-searches" ) ) {
+                searches = args[++i].split( "," );
+            } else if ( args[i].equals( "-show" ) ) {
+                show = Integer.parseInt( args[++i] );
+            } else {
+                System.out.println( "** unknown option: "+args[i]+" **" );
+            }
+        }
+        new IRoadTrip( new String [] { args[0],args[1],args[2] } );
+        IRoadTrip.RoutingGraph g = IRoadTrip.getRouting();
+        List<String> c = g.countries();
+        int n = c.size();
+
+        // what Dijkstra's says, for every pair
+        IRoadTrip.setSearch( IRoadTrip.DIJKSTRA );
+        IRoadTrip.Route [] want = new IRoadTrip.Route [n*n];
+        boolean ok = check( "dijkstra",g,c,want,true );
+        for ( String s : searches ) {
+            IRoadTrip.setSearch( Math.max( Arrays.asList( IRoadTrip.SEARCHES ).indexOf( s ),IRoadTrip.DIJKSTRA ) );
+            if ( s.equals( "ch" ) ) {
+                IRoadTrip.contract();
+            } else if ( s.equals( "hub" ) ) {
+                IRoadTrip.label();
+            } else if ( s.equals( "precompute" ) ) {
+                IRoadTrip.precompute();
+            }
+            ok &= check( s,g,c,want,false );
+            IRoadTrip.setRouting( g ); // without the table, contraction or labels of this search
+        }
+        if ( Arrays.asList( searches ).contains( "astar" ) ) {
+            ok &= lowered( g,c,want );
+            IRoadTrip.setRouting( g );
+        }
+        IRoadTrip.setSearch( IRoadTrip.DIJKSTRA );
+        System.exit( (ok ? 0 : 1) );
+    }
+
+    /* CHECK(): runs findRoute() on all pairs and checks every route. With first, the routes are kept in want[]
+       instead of compared with it. Prints one line for the search, returns false if a check failed */
+    private static boolean check( String name,IRoadTrip.RoutingGraph g,List<String> c,IRoadTrip.Route [] want,
+                                  boolean first ) {
+
+        int n = c.size();
+        int bad = 0;
+        int other = 0;
+        List<String> shown = new ArrayList<>();
+        for ( int a = 0;  a < n;  a++ ) {
+            for ( int b = 0;  b < n;  b++ ) {
+                IRoadTrip.Route r = IRoadTrip.findRoute( c.get( a ),c.get( b ) );
+                String e = error( g,r,a,b );
+                if ( e == null && !first && r.distance != want[a*n+b].distance ) {
+                    e = r.distance+" km instead of "+want[a*n+b].distance;
+                }
+                if ( e == null && !first && r.vertices.length > want[a*n+b].vertices.length ) { // a detour of 0 km
+                    e = (r.vertices.length-1)+" legs instead of "+(want[a*n+b].vertices.length-1);
+                }
+                if ( e != null ) {
+                    if ( bad++ < show ) {
+                        shown.add( "  ** "+c.get( a )+" -> "+c.get( b )+": "+e+" "+r.legs() );
+                    }
+                    continue;
+                }
+                if ( first ) {
+                    want[a*n+b] = r;
+                } else if ( !Arrays.equals( r.vertices,want[a*n+b].vertices ) ) { // just as short, other borders
+                    if ( other++ < show ) {
+                        shown.add( "  "+c.get( a )+" -> "+c.get( b )+": "+r.legs()+" instead of "+want[a*n+b].legs() );
+                    }
+                }
+            }
+        }
+        System.out.printf( "%-12s %d pairs, %d failed, %d with other legs of the same total%n",name,n*n,bad,other );
+        for ( String s : shown ) {
+            System.out.println( s );
+        }
+        return( bad == 0 );
+    }
+
+    /* LOWERED(): makes every 7th border a third of its km with setBorder(), so the capital to capital distance
+       is more than some roads, and checks A* against Dijkstra's on the changed graph */
+    private static boolean lowered( IRoadTrip.RoutingGraph g,List<String> c,IRoadTrip.Route [] want ) {
+
+        IRoadTrip.Graph b = g.graph;
+        int k = 0;
+        for ( int u = 0;  u < b.n;  u++ ) {
+            for ( int e = b.offsets[u];  e < b.offsets[u+1];  e++ ) {
+                if ( u < b.targets[e] && k++ % 7 == 0 ) {
+                    IRoadTrip.setBorder( c.get( u ),c.get( b.targets[e] ),b.weights[e]/3 );
+                }
+            }
+        }
+        IRoadTrip.setSearch( IRoadTrip.DIJKSTRA );
+        boolean ok = check( "dijkstra-",IRoadTrip.getRouting(),c,want,true );
+        IRoadTrip.setSearch( IRoadTrip.ASTAR );
+        ok &= check( "astar-",IRoadTrip.getRouting(),c,want,false );
+        IRoadTrip.setSearch( IRoadTrip.DIJKSTRA );
+        return( ok );
+    }
+
+    /* ERROR(): what is wrong with the route from a to b on its own, null if nothing */
+    private static String error( IRoadTrip.RoutingGraph g,IRoadTrip.Route r,int a,int b ) {
+
+        if ( r.unreachable ) {
+            return( (g.reachable( a,b ) ? "no route, but they are connected" : null) );
+        }
+        int [] v = r.vertices;
+        if ( v[0] != a || v[v.length-1] != b ) {
+            return( "does not go from one to the other" );
+        }
+        Set<Integer> seen = new HashSet<>();
+        long sum = 0;
+        for ( int j = 0;  j < v.length;  j++ ) {
+            if ( !seen.add( v[j] ) ) {
+                return( r.country( j )+" twice" );
+            }
+            if ( j > 0 ) {
+                int w = g.graph.weight( v[j-1],v[j] );
+                if ( w < 0 || w != r.km[j-1] ) {
+                    return( "leg "+j+" is not a border of "+r.km[j-1]+" km" );
+                }
+                sum += w;
+            }
+        }
+        return( (sum != r.distance ? "legs add up to "+sum+", not "+r.distance : null) );
+    }
+}
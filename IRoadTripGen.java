@@ -0,0 +1,276 @@
+/* ------------------------------------------------------------------------ */
+/* IROADTRIPGEN.JAVA: writes synthetic borders.txt, state_name.tsv and      */
+/* capdist.csv files, in the same formats as the real ones, for testing     */
+/* IRoadTrip on larger graphs. The countries are points spread evenly on a  */
+/* sphere the size of the earth, each bordering its nearest neighbors, so   */
+/* the graph looks like a map: few borders per country and no long jumps.   */
+/* ------------------------------------------------------------------------ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+public class IRoadTripGen {
+    /*-------------------------------------------------------------------*/
+    /* global variables
+    /*-------------------------------------------------------------------*/
+    static final double R = 6371;   // radius of the earth in km
+    static final int K = 4;         // nearest neighbors each country borders, before making borders mutual
+
+    public static void main(String[] args) throws IOException {
+        if ( args.length < 2 ) {
+            System.out.println( "** usage: IRoadTripGen countries dir [-seed s] [-islands fraction] [-all] **" );
+            System.exit( 0 );
+        }
+        int n = Integer.parseInt( args[0] );
+        File dir = new File( args[1] );
+        long seed = 1;
+        double islands = 0.1;   // fraction of countries without borders, like the real islands
+        boolean all = false;    // capdist.csv for all pairs, like the real one, instead of only the borders
+        for ( int i = 2;  i < args.length;  i++ ) {
+            if ( args[i].equals( "-seed" ) && i+1 < args.length ) {
+                seed = Long.parseLong( args[++i] );
+            } else if ( args[i].equals( "-islands" ) && i+1 < args.length ) {
+                islands = Double.parseDouble( args[++i] );
+            } else if ( args[i].equals( "-all" ) ) {
+                all = true;
+            } else {
+                System.out.println( "** unknown option: "+args[i]+" **" );
+            }
+        }
+        long t0 = System.nanoTime();
+        int [][] nb = write( n,dir,seed,islands,all );
+        long m = 0;
+        for ( int [] x : nb ) {
+            m += x.length;
+        }
+        System.out.printf( "%d countries, %d borders, written to %s in %.0f ms%n",n,m/2,dir,
+                (System.nanoTime()-t0)/1e6 );
+    }
+
+    /* WRITE(): generates n countries and writes the three files to dir. Returns the neighbors of every country */
+    static int [][] write( int n,File dir,long seed,double islands,boolean all ) throws IOException {
+
+        dir.mkdirs();
+        Random rnd = new Random( seed );
+        double [][] p = points( n,rnd );
+        int [][] nb = borders( p,rnd,islands );
+        String [] name = new String [n];
+        for ( int i = 0;  i < n;  i++ ) {
+            name[i] = "Land "+letters( i,false );
+        }
+
+        // borders.txt: "name = neighbor 1,234 km; neighbor 56 km", in name order like the real one
+        Integer [] byName = new Integer [n];
+        for ( int i = 0;  i < n;  i++ ) {
+            byName[i] = i;
+        }
+        Arrays.sort( byName,Comparator.comparing( (Integer i) -> name[i] ) );
+        try ( PrintWriter out = writer( new File( dir,"borders.txt" ) ) ) {
+            for ( int i : byName ) {
+                StringBuilder s = new StringBuilder( name[i] ).append( " = " );
+                for ( int j = 0;  j < nb[i].length;  j++ ) {
+                    int len = 1+(int) (km( p[i],p[nb[i][j]] )/2); // border length, not used by IRoadTrip
+                    s.append( (j > 0 ? "; " : "") ).append( name[nb[i][j]] ).append( ' ' );
+                    s.append( String.format( Locale.ROOT,"%,d",len ) ).append( " km" );
+                }
+                out.print( s.append( '\n' ) );
+            }
+        }
+
+        // state_name.tsv: "statenumber stateid countryname start end", state numbers 1 .. n
+        try ( PrintWriter out = writer( new File( dir,"state_name.tsv" ) ) ) {
+            out.print( "statenumber\tstateid\tcountryname\tstart\tend\n" );
+            for ( int i = 0;  i < n;  i++ ) {
+                out.print( (i+1)+"\t"+letters( i,true )+"\t"+name[i]+"\t1816-01-01\t2020-12-31\n" );
+            }
+        }
+
+        // capdist.csv: "numa,ida,numb,idb,kmdist,midist", one block per numa
+        try ( PrintWriter out = writer( new File( dir,"capdist.csv" ) ) ) {
+            out.print( "numa,ida,numb,idb,kmdist,midist\r\n" );
+            for ( int a = 0;  a < n;  a++ ) {
+                String head = (a+1)+","+letters( a,true )+",";
+                if ( all ) {
+                    for ( int b = 0;  b < n;  b++ ) {
+                        if ( b != a ) {
+                            line( out,head,b,km( p[a],p[b] ) );
+                        }
+                    }
+                } else {
+                    for ( int b : nb[a] ) {
+                        line( out,head,b,km( p[a],p[b] ) );
+                    }
+                }
+            }
+        }
+        return( nb );
+    }
+
+    /* LINE(): one line of capdist.csv, the miles are rounded like the real file */
+    private static void line( PrintWriter out,String head,int b,double km ) {
+        long d = Math.round( km );
+        out.print( head+(b+1)+","+letters( b,true )+","+d+","+Math.round( km/1.609344 )+"\r\n" );
+    }
+
+    /* POINTS(): n capitals spread evenly on the unit sphere (a Fibonacci lattice), shaken a little so
+       the borders are not all alike */
+    private static double [][] points( int n,Random rnd ) {
+
+        double [][] p = new double [n][];
+        double golden = Math.PI*(3-Math.sqrt( 5 ));
+        double jitter = Math.sqrt( 4*Math.PI/n )/3; // about a third of the spacing
+        for ( int i = 0;  i < n;  i++ ) {
+            double z = 1-(2*i+1.0)/n;
+            double r = Math.sqrt( 1-z*z );
+            double x = r*Math.cos( golden*i )+jitter*rnd.nextGaussian();
+            double y = r*Math.sin( golden*i )+jitter*rnd.nextGaussian();
+            z += jitter*rnd.nextGaussian();
+            double l = Math.sqrt( x*x+y*y+z*z );
+            p[i] = new double [] { x/l,y/l,z/l };
+        }
+        return( p );
+    }
+
+    /* BORDERS(): every country borders its K nearest countries, and borders are mutual. The nearest are found
+       in a grid of cubes over the sphere, so it takes O(n) instead of O(n^2). Islands get no borders */
+    private static int [][] borders( double [][] p,Random rnd,double islands ) {
+
+        int n = p.length;
+        double cell = 2*Math.sqrt( 4*Math.PI/n ); // about two spacings, so the cubes around a point hold its K nearest
+        int g = (int) Math.ceil( 2/cell )+1;
+        long [] key = new long [n]; // cube<<32|point, sorted so every cube is a run
+        for ( int i = 0;  i < n;  i++ ) {
+            key[i] = (cube( p[i],cell,g ) << 32) | i;
+        }
+        Arrays.sort( key );
+
+        boolean [] island = new boolean [n];
+        for ( int i = 0;  i < n;  i++ ) {
+            island[i] = rnd.nextDouble() < islands;
+        }
+        long [] edge = new long [K*n]; // min<<32|max, so both directions of a border are the same
+        int m = 0;
+        int [] best = new int [K];
+        double [] bestD = new double [K];
+        for ( int i = 0;  i < n;  i++ ) {
+            if ( island[i] ) {
+                continue;
+            }
+            int found = 0;
+            int cx = (int) ((p[i][0]+1)/cell), cy = (int) ((p[i][1]+1)/cell), cz = (int) ((p[i][2]+1)/cell);
+            for ( int dx = -1;  dx <= 1;  dx++ ) {
+                for ( int dy = -1;  dy <= 1;  dy++ ) {
+                    for ( int dz = -1;  dz <= 1;  dz++ ) {
+                        long c = ((long) (cx+dx)*g+(cy+dy))*g+(cz+dz);
+                        for ( int k = first( key,c );  k < n && (key[k] >>> 32) == c;  k++ ) {
+                            int j = (int) key[k];
+                            if ( j == i || island[j] ) {
+                                continue;
+                            }
+                            double d = chord( p[i],p[j] );
+                            if ( found < K ) { // insertion sort into the K best
+                                found++;
+                            } else if ( d >= bestD[K-1] ) {
+                                continue;
+                            }
+                            int s = found-1;
+                            while ( s > 0 && bestD[s-1] > d ) {
+                                best[s] = best[s-1];
+                                bestD[s] = bestD[s-1];
+                                s--;
+                            }
+                            best[s] = j;
+                            bestD[s] = d;
+                        }
+                    }
+                }
+            }
+            for ( int s = 0;  s < found;  s++ ) {
+                edge[m++] = ((long) Math.min( i,best[s] ) << 32) | Math.max( i,best[s] );
+            }
+        }
+
+        // mutual and without repeats: sorted, the same border is next to itself
+        Arrays.sort( edge,0,m );
+        int [] degree = new int [n];
+        int u = 0;
+        for ( int k = 0;  k < m;  k++ ) {
+            if ( k == 0 || edge[k] != edge[k-1] ) {
+                edge[u++] = edge[k];
+                degree[(int) (edge[k] >>> 32)]++;
+                degree[(int) edge[k]]++;
+            }
+        }
+        int [][] y = new int [n][];
+        for ( int i = 0;  i < n;  i++ ) {
+            y[i] = new int [degree[i]];
+            degree[i] = 0;
+        }
+        for ( int k = 0;  k < u;  k++ ) {
+            int a = (int) (edge[k] >>> 32), b = (int) edge[k];
+            y[a][degree[a]++] = b;
+            y[b][degree[b]++] = a;
+        }
+        for ( int [] x : y ) { // neighbors in increasing order, like a TreeSet would have them
+            Arrays.sort( x );
+        }
+        return( y );
+    }
+
+    /* CUBE(): number of the grid cube a point is in */
+    private static long cube( double [] q,double cell,int g ) {
+        long x = (long) ((q[0]+1)/cell), y = (long) ((q[1]+1)/cell), z = (long) ((q[2]+1)/cell);
+        return( (x*g+y)*g+z );
+    }
+
+    /* FIRST(): first spot in key[] of cube c, or where it would be */
+    private static int first( long [] key,long c ) {
+
+        int lo = 0, hi = key.length;
+        while ( lo < hi ) {
+            int mid = (lo+hi) >>> 1;
+            if ( (key[mid] >>> 32) < c ) {
+                lo = mid+1;
+            } else {
+                hi = mid;
+            }
+        }
+        return( lo );
+    }
+
+    /* CHORD(): straight line distance between two points on the unit sphere, in the same order as km() */
+    private static double chord( double [] a,double [] b ) {
+        double x = a[0]-b[0], y = a[1]-b[1], z = a[2]-b[2];
+        return( x*x+y*y+z*z );
+    }
+
+    /* KM(): great circle distance between two capitals */
+    private static double km( double [] a,double [] b ) {
+        double dot = a[0]*b[0]+a[1]*b[1]+a[2]*b[2];
+        return( R*Math.acos( Math.max( -1,Math.min( 1,dot ) ) ) );
+    }
+
+    /* LETTERS(): i written in letters, "Aa", "Ab" .. for names or "AA", "AB" .. for state ids. IRoadTrip
+       takes the first digit of a neighbor in borders.txt for the start of its distance, so names have none */
+    static String letters( int i,boolean upper ) {
+
+        StringBuilder s = new StringBuilder();
+        do {
+            s.append( (char) ('a'+i%26) );
+            i /= 26;
+        } while ( i > 0 );
+        while ( s.length() < 2 ) {
+            s.append( 'a' );
+        }
+        s.reverse();
+        s.setCharAt( 0,Character.toUpperCase( s.charAt( 0 ) ) );
+        return( (upper ? s.toString().toUpperCase( Locale.ROOT ) : s.toString()) );
+    }
+
+    /* WRITER(): a buffered UTF-8 writer */
+    private static PrintWriter writer( File f ) throws IOException {
+        return( new PrintWriter( new BufferedWriter( new OutputStreamWriter(
+                new FileOutputStream( f ),StandardCharsets.UTF_8 ),1 << 16 ) ) );
+    }
+}
@@ -0,0 +1,133 @@
+/* ------------------------------------------------------------------------ */
+/* IROADTRIPSCALE.JAVA: how IRoadTrip grows with the size of the data. For  */
+/* every size, IRoadTripGen writes a synthetic map, IRoadTrip loads it, and */
+/* the load time (stage by stage), the heap the loaded graph takes and the  */
+/* latency percentiles of findRoute() on random pairs are printed, once for */
+/* every search.                                                            */
+/* ------------------------------------------------------------------------ */
+
+import java.util.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+public class IRoadTripScale {
+    /*-------------------------------------------------------------------*/
+    /* global variables
+    /*-------------------------------------------------------------------*/
+    static int [] sizes = { 1000,4000,16000 };  // countries per map
+    static String [] searches = { "dijkstra","bidi","astar" };
+    static int queries = 1000;                  // measured queries per search and size, after as many warmup ones
+    static long seed = 1;
+    static volatile long sink;                  // every result ends up here, so the JIT can not drop the work
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws IOException {
+        File dir = null; // where the maps are written, a temporary directory by default
+        for ( int i = 0;  i+1 < args.length;  i++ ) {
+            if ( args[i].equals( "-sizes" ) ) {
+                sizes = Arrays.stream( args[++i].split( "," ) ).mapToInt( Integer::parseInt ).toArray();
+            } else if ( args[i].equals( "-searches" ) ) {
+                searches = args[++i].split( "," );
+            } else if ( args[i].equals( "-queries" ) ) {
+                queries = Integer.parseInt( args[++i] );
+            } else if ( args[i].equals( "-seed" ) ) {
+                seed = Long.parseLong( args[++i] );
+            } else if ( args[i].equals( "-dir" ) ) {
+                dir = new File( args[++i] );
+            } else {
+                System.out.println( "** unknown option: "+args[i]+" **" );
+            }
+        }
+        boolean temp = (dir == null);
+        if ( temp ) {
+            dir = java.nio.file.Files.createTempDirectory( "iroadtrip" ).toFile();
+        }
+        System.out.printf( "# java %s, %d cores, %d MB max heap, %d queries per search%n",
+                System.getProperty( "java.version" ),Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory() >> 20,queries );
+        System.out.printf( "%10s %10s %10s %10s %10s %-10s %10s %10s %10s %10s%n","countries","borders","load ms",
+                "heap MB","B/country","search","p50 us","p90 us","p99 us","max us" );
+
+        for ( int n : sizes ) {
+            File d = new File( dir,"n"+n+"-s"+seed );
+            if ( !new File( d,"capdist.csv" ).exists() ) { // maps are kept, so a second run only loads
+                IRoadTripGen.write( n,d,seed,0.1,false );
+            }
+            try {
+                run( n,d );
+            } catch( OutOfMemoryError e ) {
+                IRoadTrip.setRouting( null );
+                System.out.printf( "%10d %10s%n",n,"out of memory, larger sizes skipped" );
+                break;
+            }
+        }
+        if ( temp ) {
+            for ( File d : Objects.requireNonNull( dir.listFiles() ) ) {
+                for ( File f : Objects.requireNonNull( d.listFiles() ) ) {
+                    f.delete();
+                }
+                d.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /* RUN(): loads the map in d and measures it, one line per search */
+    private static void run( int n,File d ) {
+
+        IRoadTrip.setRouting( null ); // the last map is garbage before the heap is measured
+        long before = heap();
+        long t0 = System.nanoTime();
+        new IRoadTrip( new String [] { new File( d,"borders.txt" ).getPath(),new File( d,"state_name.tsv" ).getPath(),
+                new File( d,"capdist.csv" ).getPath() } );
+        double loadMs = (System.nanoTime()-t0)/1e6;
+        long bytes = heap()-before;
+        IRoadTrip.RoutingGraph g = IRoadTrip.getRouting();
+        long borders = g.graph.targets.length/2;
+        String stages = IRoadTrip.getRouting().loadTimes().toString();
+
+        // the same random pairs for every search
+        Random rnd = new Random( seed );
+        String [][] pairs = new String [2*queries][];
+        for ( int i = 0;  i < pairs.length;  i++ ) {
+            pairs[i] = new String [] { g.countries[rnd.nextInt( n )],g.countries[rnd.nextInt( n )] };
+        }
+        for ( String s : searches ) {
+            IRoadTrip.setSearch( Math.max( Arrays.asList( IRoadTrip.SEARCHES ).indexOf( s ),IRoadTrip.DIJKSTRA ) );
+            if ( IRoadTrip.getSearch() == IRoadTrip.CH ) {
+                IRoadTrip.contract();
+            } else if ( IRoadTrip.getSearch() == IRoadTrip.HUB ) {
+                IRoadTrip.label();
+            }
+            long [] ns = new long [queries];
+            for ( int i = 0;  i < pairs.length;  i++ ) { // the first half is the warmup
+                long q0 = System.nanoTime();
+                sink += IRoadTrip.findRoute( pairs[i][0],pairs[i][1] ).distance;
+                if ( i >= queries ) {
+                    ns[i-queries] = System.nanoTime()-q0;
+                }
+            }
+            Arrays.sort( ns );
+            System.out.printf( "%10d %10d %10.0f %10.1f %10d %-10s %10.1f %10.1f %10.1f %10.1f%n",n,borders,loadMs,
+                    bytes/1e6,bytes/n,s,pct( ns,50 )/1e3,pct( ns,90 )/1e3,pct( ns,99 )/1e3,ns[ns.length-1]/1e3 );
+            IRoadTrip.setRouting( g ); // without the contraction or labels of this search
+        }
+        IRoadTrip.setSearch( IRoadTrip.DIJKSTRA );
+        System.out.println( "#   load stages (ns): "+stages );
+    }
+
+    /* PCT(): the p-th percentile of sorted latencies */
+    private static long pct( long [] ns,int p ) {
+        return( ns[Math.min( ns.length-1,(int) ((long) ns.length*p/100) )] );
+    }
+
+    /* HEAP(): heap in use after a full collection */
+    private static long heap() {
+
+        for ( int i = 0;  i < 3;  i++ ) { // a few times, so objects with finalizers or references go too
+            System.gc();
+        }
+        return( memory.getHeapMemoryUsage().getUsed() );
+    }
+}